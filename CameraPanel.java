@@ -49,8 +49,10 @@ public class	CameraPanel extends JPanel
 	// Render quality
 	private JLabel	qualityLabel;
 	private JComboBox	qualityComboBox;
-	private final String	LOW="low", MED="med", HIGH="high";
-	private String []	qualityNames = { LOW, MED, HIGH };
+	private final String	LOW="low", MED="med", HIGH="high", ZBUFFER="z-buffer";
+	private String []	qualityNames = { LOW, MED, HIGH, ZBUFFER };
+	private JCheckBox	bspCheckBox;
+	private JCheckBox	cullCheckBox;
 	
 	// Perspective
 	private JLabel	perspUnitLabel, extentsMultLabel;
@@ -118,6 +120,18 @@ public class	CameraPanel extends JPanel
 		qualityComboBox.addActionListener(this);
 		renderPanel.add(qualityPanel);
 		
+		// Depth sorting
+		JPanel	bspPanel = new JPanel();
+		bspPanel.add(bspCheckBox = new JCheckBox("BSP sorting", envr.camera.isBSPSorted()));
+		bspCheckBox.addItemListener(this);
+		renderPanel.add(bspPanel);
+		
+		// Back-face culling
+		JPanel	cullPanel = new JPanel();
+		cullPanel.add(cullCheckBox = new JCheckBox("Cull back faces", envr.camera.isBackFaceCulled()));
+		cullCheckBox.addItemListener(this);
+		renderPanel.add(cullPanel);
+		
 		add(renderPanel);
 		
 		
@@ -302,7 +316,13 @@ public class	CameraPanel extends JPanel
 			case High:
 				qualityComboBox.setSelectedItem(HIGH);
 				break;
+			
+			case ZBuffer:
+				qualityComboBox.setSelectedItem(ZBUFFER);
+				break;
 		}
+		bspCheckBox.setSelected(envr.camera.isBSPSorted());
+		cullCheckBox.setSelected(envr.camera.isBackFaceCulled());
 		
 		// Updates projector settings
 		CardLayout	cl = (CardLayout) modeCards.getLayout();
@@ -432,6 +452,11 @@ public class	CameraPanel extends JPanel
 			{
 				envr.camera.setRenderQuality(Camera.RenderQuality.High);
 			}
+			else
+			if (qualityName == ZBUFFER)
+			{
+				envr.camera.setRenderQuality(Camera.RenderQuality.ZBuffer);
+			}
 		}
 		
 		envr.camera.holdUpdates(false);
@@ -447,5 +472,17 @@ public class	CameraPanel extends JPanel
 			isActive = !isActive;
 			cameraUpdate(CameraListener.CameraUpdate.All);		// Lightweight update only
 		}
+		
+		// Toggles BSP depth sorting
+		if (source == bspCheckBox && bspCheckBox.isSelected() != envr.camera.isBSPSorted())
+		{
+			envr.camera.setBSPSorted(bspCheckBox.isSelected());
+		}
+		
+		// Toggles back-face culling
+		if (source == cullCheckBox && cullCheckBox.isSelected() != envr.camera.isBackFaceCulled())
+		{
+			envr.camera.setBackFaceCulled(cullCheckBox.isSelected());
+		}
 	}
 }
\ No newline at end of file
@@ -32,6 +32,7 @@ public class	GraphicsPanel extends JPanel
 	private double	zoomPerWheel    = 1.02;
 	private double	zoomInset       = 0.50;		// In fraction of panel size
 	private double	pixelsPerKey    = 5;
+	private double	pickRadius      = 4;		// In pixels, for path segments under the mouse
 	
 	private java.awt.Point	prevMousePt;
 	private	Point2D	prevScreenCenter;
@@ -116,6 +117,8 @@ public class	GraphicsPanel extends JPanel
 	{
 		envr.camera.holdUpdates(true);
 		
+		envr.camera.setViewportSize(getSize());
+		
 		double	area = getWidth() * getHeight();
 		Point2D	screenCenter = new Point2D(getWidth()/2, getHeight()/2);
 		
@@ -375,6 +378,22 @@ public class	GraphicsPanel extends JPanel
 		envr.camera.holdUpdates(false);
 	}
 	
+	public void	mouseMoved(MouseEvent e)
+	// Shows the primitive under the mouse as a tooltip
+	{
+		BVH.Hit	hit = envr.pick(new Point2D(e.getX(), e.getY()), pickRadius);
+		if (hit == null)
+		{
+			setToolTipText(null);
+		}
+		else
+		{
+			String	type = (hit.mesh instanceof PathMesh ? "Segment" : "Triangle");
+			setToolTipText(String.format("%s %d at (%.4g, %.4g, %.4g)", type, hit.primitive, 
+			               hit.point.getX(), hit.point.getY(), hit.point.getZ()));
+		}
+	}
+	
 	public void	mouseClicked(MouseEvent e)
 	{
 		requestFocusInWindow(true);
@@ -383,7 +402,6 @@ public class	GraphicsPanel extends JPanel
 	public void	mousePressed(MouseEvent e)  {}
 	public void	mouseEntered(MouseEvent e)  {}
 	public void	mouseExited(MouseEvent e)  {}
-	public void	mouseMoved(MouseEvent e)  {}
 	public void	keyReleased(KeyEvent e)  {}
 	public void	componentHidden(ComponentEvent e)  {}
 	public void	componentMoved(ComponentEvent e)  {}
@@ -30,6 +30,7 @@ public class	ObjectPanel extends JPanel
 	private String	directory, filename;
 	private	JLabel	filenameLabel;
 	private JButton	loadButton;
+	private JTextField	weldField;
 	
 	// Properties
 	private JCheckBox	fillCheckBox, edgeCheckBox, pointCheckBox;
@@ -40,6 +41,7 @@ public class	ObjectPanel extends JPanel
 	// Constants
 	private static final int	POINT_RADIUS_FIELD_SIZE = 5;
 	private static final int	OPACITY_FIELD_SIZE = 4;
+	private static final int	WELD_FIELD_SIZE = 5;
 	private final Color	backgroundColor = Color.WHITE;
 	private final Color	titleColor = Color.BLACK;
 	
@@ -86,6 +88,15 @@ public class	ObjectPanel extends JPanel
 		loadButton.addActionListener(this);
 		
 		
+		// Weld
+		JPanel	weldPanel = new JPanel();
+		weldPanel.add(new JLabel("Weld epsilon:"));
+		weldPanel.add(weldField = new JTextField(envr.getWeldEpsilon() + "", WELD_FIELD_SIZE));
+		weldField.setToolTipText("Merges STL vertices this close on load (0 exact duplicates only, negative off)");
+		add(weldPanel);
+		weldField.addActionListener(this);
+		
+		
 		// Fill
 		JPanel	fillPanel = new JPanel();
 		fillPanel.add(fillCheckBox = new JCheckBox("Fill:", attr.showFill));
@@ -183,11 +194,11 @@ public class	ObjectPanel extends JPanel
 		fillCheckBox.setSelected(attr.showFill);
 		edgeCheckBox.setSelected(attr.showEdges);
 		pointCheckBox.setSelected(attr.showPoints);
-		fillColorBox.setBackground(attr.fillColor);
+		fillColorBox.setBackground(new Color(attr.fillRGB));
 		fillOpacityField.setText((int) (attr.fillOpacity*100) + " %");
-		edgeColorBox.setBackground(attr.edgeColor);
+		edgeColorBox.setBackground(new Color(attr.edgeRGB));
 		edgeOpacityField.setText((int) (attr.edgeOpacity*100) + " %");
-		pointColorBox.setBackground(attr.pointColor);
+		pointColorBox.setBackground(new Color(attr.pointRGB));
 		pointOpacityField.setText((int) (attr.pointOpacity*100) + " %");
 		pointRadiusField.setText(attr.pointRadius + "");
 	}
@@ -195,10 +206,17 @@ public class	ObjectPanel extends JPanel
 	public void	colorUpdate()
 	{
 		Attributes	attr = envr.object.getAttr();
-		attr.fillColor = fillColorBox.getBackground();
-		attr.edgeColor = edgeColorBox.getBackground();
-		attr.pointColor = pointColorBox.getBackground();
-		envr.object.setAttrToAll(attr);
+		attr = attr.withFill(fillColorBox.getBackground().getRGB(), attr.fillOpacity, attr.showFill);
+		attr = attr.withEdges(edgeColorBox.getBackground().getRGB(), attr.edgeOpacity, attr.showEdges);
+		attr = attr.withPoints(pointColorBox.getBackground().getRGB(), attr.pointOpacity, attr.showPoints);
+		envr.object.setAttr(attr);
+	}
+	
+	
+	public void	weldUpdate()
+	{
+		StringTokenizer	st = new StringTokenizer(weldField.getText(), " ");
+		envr.setWeldEpsilon(Double.parseDouble(st.nextToken()));
 	}
 	
 	
@@ -228,12 +246,13 @@ public class	ObjectPanel extends JPanel
 			// Loads the file
 			if (newFilename != null)
 			{
+				weldUpdate();
 				if (envr.load(newDirectory + newFilename))
 				// Load successful
 				{
 					directory = newDirectory;
 					filename = newFilename;
-					filenameLabel.setText(filename);
+					filenameLabel.setText(filename + (envr.getNumMerged() > 0 ? " (" + envr.getNumMerged() + " vertices merged)" : ""));
 				}
 				
 				else
@@ -257,12 +276,12 @@ public class	ObjectPanel extends JPanel
 		{
 			Attributes	attr = envr.object.getAttr();
 			StringTokenizer	st = new StringTokenizer(fillOpacityField.getText(), " %");
-			attr.fillOpacity = Double.parseDouble(st.nextToken()) / 100.0;
-			if (attr.fillOpacity < 0)
-				attr.fillOpacity = 0;
-			if (attr.fillOpacity > 1)
-				attr.fillOpacity = 1;
-			envr.object.setAttrToAll(attr);
+			double	opacity = Double.parseDouble(st.nextToken()) / 100.0;
+			if (opacity < 0)
+				opacity = 0;
+			if (opacity > 1)
+				opacity = 1;
+			envr.object.setAttr(attr.withFill(attr.fillRGB, opacity, attr.showFill));
 		}
 		else
 		
@@ -271,12 +290,12 @@ public class	ObjectPanel extends JPanel
 		{
 			Attributes	attr = envr.object.getAttr();
 			StringTokenizer	st = new StringTokenizer(edgeOpacityField.getText(), " %");
-			attr.edgeOpacity = Double.parseDouble(st.nextToken()) / 100.0;
-			if (attr.edgeOpacity < 0)
-				attr.edgeOpacity = 0;
-			if (attr.edgeOpacity > 1)
-				attr.edgeOpacity = 1;
-			envr.object.setAttrToAll(attr);
+			double	opacity = Double.parseDouble(st.nextToken()) / 100.0;
+			if (opacity < 0)
+				opacity = 0;
+			if (opacity > 1)
+				opacity = 1;
+			envr.object.setAttr(attr.withEdges(attr.edgeRGB, opacity, attr.showEdges));
 		}
 		else
 		
@@ -285,12 +304,19 @@ public class	ObjectPanel extends JPanel
 		{
 			Attributes	attr = envr.object.getAttr();
 			StringTokenizer	st = new StringTokenizer(pointOpacityField.getText(), " %");
-			attr.pointOpacity = Double.parseDouble(st.nextToken()) / 100.0;
-			if (attr.pointOpacity < 0)
-				attr.pointOpacity = 0;
-			if (attr.pointOpacity > 1)
-				attr.pointOpacity = 1;
-			envr.object.setAttrToAll(attr);
+			double	opacity = Double.parseDouble(st.nextToken()) / 100.0;
+			if (opacity < 0)
+				opacity = 0;
+			if (opacity > 1)
+				opacity = 1;
+			envr.object.setAttr(attr.withPoints(attr.pointRGB, opacity, attr.showPoints));
+		}
+		else
+		
+		// Changes the weld epsilon of the next load
+		if (source == weldField)
+		{
+			weldUpdate();
 		}
 		else
 		
@@ -299,8 +325,7 @@ public class	ObjectPanel extends JPanel
 		{
 			Attributes	attr = envr.object.getAttr();
 			StringTokenizer	st = new StringTokenizer(pointRadiusField.getText(), " ");
-			attr.pointRadius = Double.parseDouble(st.nextToken());
-			envr.object.setAttrToAll(attr);
+			envr.object.setAttr(attr.withPointRadius(Double.parseDouble(st.nextToken())));
 		}
 	}
 	
@@ -312,8 +337,7 @@ public class	ObjectPanel extends JPanel
 		if (source == fillCheckBox)
 		{
 			Attributes	attr = envr.object.getAttr();
-			attr.showFill = fillCheckBox.isSelected();
-			envr.object.setAttrToAll(attr);
+			envr.object.setAttr(attr.withFill(attr.fillRGB, attr.fillOpacity, fillCheckBox.isSelected()));
 		}
 		else
 		
@@ -321,8 +345,7 @@ public class	ObjectPanel extends JPanel
 		if (source == edgeCheckBox)
 		{
 			Attributes	attr = envr.object.getAttr();
-			attr.showEdges = edgeCheckBox.isSelected();
-			envr.object.setAttrToAll(attr);
+			envr.object.setAttr(attr.withEdges(attr.edgeRGB, attr.edgeOpacity, edgeCheckBox.isSelected()));
 		}
 		else
 		
@@ -330,8 +353,7 @@ public class	ObjectPanel extends JPanel
 		if (source == pointCheckBox)
 		{
 			Attributes	attr = envr.object.getAttr();
-			attr.showPoints = pointCheckBox.isSelected();
-			envr.object.setAttrToAll(attr);
+			envr.object.setAttr(attr.withPoints(attr.pointRGB, attr.pointOpacity, pointCheckBox.isSelected()));
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+/* ------------------------------------------------------------
+   About:      Extents benchmark
+               Times the original extents path (comparator-based
+               Group.getExtents over groups of Point3D, as the readers
+               used to load) against the packed bounds and center
+               reduction on each file.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+import java3D.io.*;
+import java3D.storage.*;
+import java.io.*;
+import java.util.*;
+
+public class	ExtentsBenchmark
+{
+	private static final int	NUM_WARMUPS = 30;
+	private static final int	NUM_RUNS = 10;
+	
+	public static void	main(String[] args)
+	// Usage: ExtentsBenchmark [data directory]
+	{
+		File	dir = new File(args.length > 0 ? args[0] : "data");
+		File[]	files = dir.listFiles();
+		if (files == null)
+		{
+			System.err.println("Error! No such directory: " + dir);
+			return;
+		}
+		Arrays.sort(files);
+		
+		System.out.printf("%-40s %10s %12s %12s %8s%n", "File", "Vertices", "Original ms", "Bounds ms", "Speedup");
+		for (File file : files)
+		{
+			GraphicObject	object = ObjectReader.read(file.getPath());
+			if (object == null)
+			{
+				continue;
+			}
+			
+			// Original path: the comparators of the original Group.getExtentsMaxRange, over the 
+			// original object layout (boxes every coordinate); nothing is cached, so no copies are needed
+			final Comparator<Double>	min = new Comparator<Double>()
+			{
+				public int	compare(Double d1, Double d2)
+				{
+					return (int) (d2 - d1);
+				}
+			};
+			final Comparator<Double>	max = new Comparator<Double>()
+			{
+				public int	compare(Double d1, Double d2)
+				{
+					return (int) (d1 - d2);
+				}
+			};
+			double	originalTime = time(toPoints(object), false, new Measure()
+			{
+				public void	run(GraphicObject object)
+				{
+					object.getExtents(min);
+					object.getExtents(max);
+				}
+			});
+			
+			// Packed reduction, on a fresh copy each run so that no cached result is reused
+			double	boundsTime = time(object, true, new Measure()
+			{
+				public void	run(GraphicObject object)
+				{
+					object.getBounds();
+					object.getCenter();
+				}
+			});
+			
+			System.out.printf("%-40s %10d %12.3f %12.3f %7.1fx%n", file.getName(), getNumVertices(object),
+			                  originalTime, boundsTime, originalTime / boundsTime);
+		}
+	}
+	
+	private interface	Measure
+	{
+		public void	run(GraphicObject object);
+	}
+	
+	private static double	time(GraphicObject object, boolean isCopied, Measure measure)
+	// Returns the median time in milliseconds, each run on an unmeasured copy of the object if requested
+	{
+		double[]	times = new double[NUM_RUNS];
+		for (int i = -NUM_WARMUPS; i < NUM_RUNS; i++)
+		{
+			GraphicObject	copy = (isCopied ? object.getProduct(1) : object);
+			long	start = System.nanoTime();
+			measure.run(copy);
+			long	end = System.nanoTime();
+			if (i >= 0)
+			{
+				times[i] = (end - start) / 1e6;
+			}
+		}
+		Arrays.sort(times);
+		return times[NUM_RUNS / 2];
+	}
+	
+	private static GraphicObject	toPoints(GraphicObject object)
+	// Returns the object in its original layout: a group of Point3D per triangle (as STL files were read), 
+	// or per path (as MPP files were read, with the path vertices in order)
+	{
+		if (object instanceof TriangleMesh)
+		{
+			TriangleMesh	mesh = (TriangleMesh) object;
+			Group	group = new Group();
+			for (int t = 0; t < mesh.size(); t++)
+			{
+				Group	polygon = new Group();
+				for (int corner = 0; corner < 3; corner++)
+				{
+					int	v = mesh.getVertexIndex(t, corner);
+					polygon.add(new Point3D(mesh.getX(v), mesh.getY(v), mesh.getZ(v)));
+				}
+				group.add(polygon);
+			}
+			return group;
+		}
+		if (object instanceof Mesh)
+		{
+			Mesh	mesh = (Mesh) object;
+			Group	path = new Group();
+			for (int v = 0; v < mesh.getNumVertices(); v++)
+			{
+				path.add(new Point3D(mesh.getX(v), mesh.getY(v), mesh.getZ(v)));
+			}
+			return path;
+		}
+		if (object instanceof Group)
+		{
+			Group	group = new Group();
+			for (GraphicObject obj : ((Group) object).getView())
+			{
+				group.add(toPoints(obj));
+			}
+			return group;
+		}
+		return object;
+	}
+	
+	private static int	getNumVertices(GraphicObject object)
+	{
+		if (object instanceof Mesh)
+		{
+			return ((Mesh) object).getNumVertices();
+		}
+		int	count = (object instanceof Point ? 1 : 0);
+		if (object instanceof Group)
+		{
+			for (GraphicObject obj : ((Group) object).getView())
+			{
+				count += getNumVertices(obj);
+			}
+		}
+		return count;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+/* ------------------------------------------------------------
+   About:      Frame allocation benchmark
+               Measures the heap allocations of steady-state orbit
+               frames of each file, split into rendering and painting
+               (Java2D included), and names the largest paint allocator
+               with Java Flight Recorder.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+import java3D.*;
+import java3D.storage.*;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import jdk.jfr.*;
+import jdk.jfr.consumer.*;
+
+public class	FrameAllocationBenchmark
+{
+	private static final int	NUM_WARMUPS = 100;
+	private static final int	NUM_FRAMES = 20;
+	private static final int	WIDTH = 800, HEIGHT = 600;
+	
+	// High quality subdivides its polygons anew every frame, so it is not measured
+	private static final Camera.RenderQuality[]	QUALITIES = { Camera.RenderQuality.Low, 
+	                                                          Camera.RenderQuality.Med, 
+	                                                          Camera.RenderQuality.ZBuffer };
+	
+	public static void	main(String[] args) throws Exception
+	// Usage: FrameAllocationBenchmark [data directory]
+	{
+		File	dir = new File(args.length > 0 ? args[0] : "data");
+		File[]	files = dir.listFiles();
+		if (files == null)
+		{
+			System.err.println("Error! No such directory: " + dir);
+			return;
+		}
+		Arrays.sort(files);
+		
+		BufferedImage	image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics	g = image.getGraphics();
+		g.setClip(0, 0, WIDTH, HEIGHT);		// As for a panel, which lets edges be drawn in batches
+		
+		System.out.printf("%-40s %-8s %12s %12s  %s%n", "File", "Quality", "Render KB", "Paint KB", "Largest paint allocator");
+		for (File file : files)
+		{
+			Environment	envr = new Environment();
+			if (!envr.load(file.getPath()))
+			{
+				continue;
+			}
+			envr.camera.setViewportSize(new Dimension(WIDTH, HEIGHT));
+			envr.camera.setZoomTo(envr.object, new Rectangle(0, 0, WIDTH, HEIGHT));
+			
+			for (Camera.RenderQuality quality : QUALITIES)
+			{
+				envr.camera.setRenderQuality(quality);
+				for (int frame = 0; frame < NUM_WARMUPS; frame++)
+				{
+					orbit(envr, frame);
+					if (frame % 10 == 0)
+					{
+						envr.paint(g);
+					}
+				}
+				
+				// Measures the orbit frames, then the painting of the last frame as often
+				long	start = getAllocatedBytes();
+				for (int frame = 0; frame < NUM_FRAMES; frame++)
+				{
+					orbit(envr, NUM_WARMUPS + frame);
+				}
+				long	renderBytes = getAllocatedBytes() - start;
+				
+				start = getAllocatedBytes();
+				for (int frame = 0; frame < NUM_FRAMES; frame++)
+				{
+					envr.paint(g);
+				}
+				long	paintBytes = getAllocatedBytes() - start;
+				
+				// Starting a recording discards compiled code, so it only runs once the totals are taken
+				Recording	recording = startRecording();
+				envr.paint(g);
+				String	largest = getLargest(stopRecording(recording));
+				
+				System.out.printf("%-40s %-8s %12.1f %12.1f  %s%n", file.getName(), quality, 
+				                  renderBytes / 1024.0 / NUM_FRAMES, paintBytes / 1024.0 / NUM_FRAMES, largest);
+			}
+		}
+	}
+	
+	private static void	orbit(Environment envr, int frame)
+	// Renders one frame of a camera orbit
+	{
+		envr.camera.setViewAngles(new Point3D(0, 10 + frame % 40, 30 + frame));
+		envr.render();
+	}
+	
+	private static Recording	startRecording()
+	{
+		Recording	recording = new Recording();
+		recording.enable("jdk.ObjectAllocationInNewTLAB").withoutStackTrace();
+		recording.enable("jdk.ObjectAllocationOutsideTLAB").withoutStackTrace();
+		recording.start();
+		return recording;
+	}
+	
+	private static Map<String, Long>	stopRecording(Recording recording) throws IOException
+	{
+		recording.stop();
+		Path	path = Files.createTempFile("frames", ".jfr");
+		recording.dump(path);
+		recording.close();
+		Map<String, Long>	bytes = getAllocatedBytesByClass(path);
+		Files.delete(path);
+		return bytes;
+	}
+	
+	private static long	getAllocatedBytes()
+	// Returns the bytes allocated so far by all live threads (the rendering pool included)
+	{
+		com.sun.management.ThreadMXBean	bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long	total = 0;
+		for (long size : bean.getThreadAllocatedBytes(bean.getAllThreadIds()))
+		{
+			if (size > 0)
+			{
+				total += size;
+			}
+		}
+		return total;
+	}
+	
+	private static String	getLargest(Map<String, Long> bytes)
+	// Returns the class with the most allocated bytes
+	{
+		long	max = 0;
+		String	largest = "-";
+		for (Map.Entry<String, Long> entry : bytes.entrySet())
+		{
+			if (entry.getValue() > max)
+			{
+				max = entry.getValue();
+				largest = entry.getKey();
+			}
+		}
+		return largest;
+	}
+	
+	private static Map<String, Long>	getAllocatedBytesByClass(Path path) throws IOException
+	// Returns the bytes allocated by each class (new thread-local allocation buffers count in full)
+	// Allocations of the recorder's own threads are left out
+	{
+		Map<String, Long>	bytes = new HashMap<String, Long>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(path))
+		{
+			RecordedThread	thread = event.getThread();
+			if (thread != null && thread.getJavaName() != null && thread.getJavaName().startsWith("JFR"))
+			{
+				continue;
+			}
+			
+			long	size = (event.hasField("tlabSize") ? event.getLong("tlabSize") : event.getLong("allocationSize"));
+			String	name = event.getClass("objectClass").getName();
+			Long	sum = bytes.get(name);
+			bytes.put(name, (sum != null ? sum : 0) + size);
+		}
+		return bytes;
+	}
+}
\ No newline at end of file
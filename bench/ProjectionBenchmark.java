@@ -0,0 +1,170 @@
+/* ------------------------------------------------------------
+   About:      Projection benchmark
+               Checks that batch projection (SIMD when the Vector
+               API module is present) gives bit-identical screen
+               coordinates and scaling factors to per-vertex
+               projection, and times both, on each file.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+import java3D.*;
+import java3D.render.*;
+import java3D.storage.*;
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+
+public class	ProjectionBenchmark
+{
+	private static final int	NUM_VIEWS = 8;		// Orbit views checked per file and projector
+	private static final int	NUM_WARMUP_VERTICES = 1 << 22;		// Vector code only runs compiled after many calls
+	private static final int	NUM_RUNS = 10;
+	private static final int	WIDTH = 800, HEIGHT = 600;
+	
+	public static void	main(String[] args)
+	// Usage: ProjectionBenchmark [data directory]
+	// Exits with status 1 if any projected value differs
+	{
+		File	dir = new File(args.length > 0 ? args[0] : "data");
+		File[]	files = dir.listFiles();
+		if (files == null)
+		{
+			System.err.println("Error! No such directory: " + dir);
+			return;
+		}
+		Arrays.sort(files);
+		
+		System.out.println("Vectorized: " + Projector.isVectorized());
+		System.out.printf("%-40s %-12s %10s %12s %12s %10s%n", "File", "Projector", "Vertices", "Vertex ns", "Batch ns", "Mismatches");
+		int	numMismatches = 0;
+		for (File file : files)
+		{
+			Environment	envr = new Environment();
+			if (!envr.load(file.getPath()))
+			{
+				continue;
+			}
+			envr.camera.setViewportSize(new Dimension(WIDTH, HEIGHT));
+			envr.camera.setZoomTo(envr.object, new Rectangle(0, 0, WIDTH, HEIGHT));
+			java.util.List<Mesh>	meshes = new ArrayList<Mesh>();
+			addMeshes(envr.object, meshes);
+			int	numVertices = 0;
+			for (Mesh mesh : meshes)
+			{
+				numVertices += mesh.getNumVertices();
+			}
+			if (numVertices == 0)
+			{
+				continue;
+			}
+			
+			for (Projector projector : new Projector[] { new IsometricProjector(), new PerspectiveProjector() })
+			{
+				Camera	camera = envr.camera;
+				camera.setProjector(projector);
+				int	mismatches = 0;
+				for (int view = 0; view < NUM_VIEWS; view++)
+				{
+					camera.setViewAngles(new Point3D(0, 10 + 5 * view, 30 + 45 * view));
+					for (Mesh mesh : meshes)
+					{
+						mismatches += compare(mesh, camera);
+					}
+				}
+				
+				for (int run = 0; run < NUM_WARMUP_VERTICES / numVertices; run++)
+				{
+					project(meshes, camera, false);
+					project(meshes, camera, true);
+				}
+				long	vertexTime = 0, batchTime = 0;
+				for (int run = 0; run < NUM_RUNS; run++)
+				{
+					vertexTime += project(meshes, camera, false);
+					batchTime += project(meshes, camera, true);
+				}
+				
+				System.out.printf("%-40s %-12s %10d %12.1f %12.1f %10d%n", file.getName(), projector.getType(), numVertices, 
+				                  vertexTime / (double) NUM_RUNS / numVertices, batchTime / (double) NUM_RUNS / numVertices, 
+				                  mismatches);
+				numMismatches += mismatches;
+			}
+		}
+		
+		if (numMismatches > 0)
+		{
+			System.err.println("Error! Batch projection differs from per-vertex projection at " + numMismatches + " vertices");
+			System.exit(1);
+		}
+	}
+	
+	private static int	compare(Mesh mesh, Camera camera)
+	// Returns the number of vertices whose batch projection is not bit-identical to their per-vertex projection
+	{
+		int	size = mesh.getNumVertices();
+		double[]	screenX = new double[size], screenY = new double[size], scaling = new double[size];
+		camera.getProjector().project3DtoScreen(mesh.getXCoordinates(), mesh.getYCoordinates(), mesh.getZCoordinates(), 
+		                                        size, camera, screenX, screenY, scaling);
+		int	mismatches = 0;
+		double[]	screen = new double[2];
+		for (int v = 0; v < size; v++)
+		{
+			double	s = camera.getProjector().project3DtoScreen(mesh.getX(v), mesh.getY(v), mesh.getZ(v), camera, screen);
+			if (Double.doubleToRawLongBits(s) != Double.doubleToRawLongBits(scaling[v]) || 
+			    Double.doubleToRawLongBits(screen[0]) != Double.doubleToRawLongBits(screenX[v]) || 
+			    Double.doubleToRawLongBits(screen[1]) != Double.doubleToRawLongBits(screenY[v]))
+			{
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+	
+	private static long	project(java.util.List<Mesh> meshes, Camera camera, boolean isBatched)
+	// Projects the vertices of every mesh, returning the time taken in nanoseconds
+	{
+		Projector	projector = camera.getProjector();
+		double[]	screen = new double[2];
+		long	start = System.nanoTime();
+		for (Mesh mesh : meshes)
+		{
+			int	size = mesh.getNumVertices();
+			double[]	screenX = new double[size], screenY = new double[size], scaling = new double[size];
+			if (isBatched)
+			{
+				projector.project3DtoScreen(mesh.getXCoordinates(), mesh.getYCoordinates(), mesh.getZCoordinates(), 
+				                            size, camera, screenX, screenY, scaling);
+			}
+			else
+			{
+				for (int v = 0; v < size; v++)
+				{
+					scaling[v] = projector.project3DtoScreen(mesh.getX(v), mesh.getY(v), mesh.getZ(v), camera, screen);
+					screenX[v] = screen[0];
+					screenY[v] = screen[1];
+				}
+			}
+		}
+		return System.nanoTime() - start;
+	}
+	
+	private static void	addMeshes(Group group, java.util.List<Mesh> meshes)
+	// Adds the meshes of the group and its subgroups
+	{
+		for (GraphicObject obj : group.getView())
+		{
+			if (obj instanceof Mesh)
+			{
+				meshes.add((Mesh) obj);
+			}
+			else
+			if (obj instanceof Group)
+			{
+				addMeshes((Group) obj, meshes);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -12,34 +12,85 @@ package java3D;
 import java3D.storage.*;
 import java3D.render.*;
 import java3D.io.*;
+import java3D.storage.GroupListener.GroupUpdate;
+import java.awt.EventQueue;
 import java.awt.Graphics;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class	Environment
 {
 	public Group	object = new Group();
 	public Camera	camera = new Camera();
 	private Renderer	renderer = new Renderer();
+	private Future<BVH>	index;		// Spatial index of the object, rebuilt in the background whenever it changes
+	private ExecutorService	indexBuilder = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		public Thread	newThread(Runnable r)
+		{
+			Thread	builder = new Thread(r, "BVH builder");
+			builder.setDaemon(true);
+			builder.setPriority(Thread.MIN_PRIORITY);
+			return builder;
+		}
+	});
+	private double	pickTolerance = 0.05;		// Largest screen distance (in pixels) between a pick ray and its straight pieces
+	private double	weldEpsilon = 0;		// Grid size within which duplicate STL vertices are merged on load (negative disables)
+	private int	numMerged = 0;		// Vertices merged by the last load
 	
 	
 	/* Constructors
 	---------------------------------------------------------------------- */
 	public	Environment()
-	{}
+	{
+		object.addGroupListener(new GroupListener()
+		{
+			public void	groupUpdate(GroupUpdate update)
+			{
+				if (update != GroupUpdate.Attributes)
+				{
+					buildIndex();
+				}
+			}
+		});
+		
+		// Redraws with the finished tree (and its statistics) instead of waiting for the next camera change
+		renderer.setTreeListener(new Runnable()
+		{
+			public void	run()
+			{
+				EventQueue.invokeLater(new Runnable()
+				{
+					public void	run()
+					{
+						if (camera.isBSPSorted())
+						{
+							camera.update();
+						}
+					}
+				});
+			}
+		});
+	}
 	
 	
 	/* I/O
 	---------------------------------------------------------------------- */
 	public boolean	load(String filename)
 	{
-		GraphicObject	newObject = ObjectReader.read(filename);
+		ObjectReader	reader = ObjectReader.getReader(filename);
+		if (reader instanceof STLReader)
+		{
+			((STLReader) reader).setWeldEpsilon(weldEpsilon);
+		}
+		GraphicObject	newObject = (reader != null ? reader.read(new File(filename)) : null);
+		numMerged = (reader instanceof STLReader ? ((STLReader) reader).getNumMerged() : 0);
 		if (newObject != null)
 		// Load successful
 		{
-			// Replaces objects only (not attributes)
-			Attributes	attr = object.getAttr();
+			// Replaces objects only (not attributes, which the new objects inherit)
 			object.set(newObject);
-			object.setAttrToAll(attr);
 			
 			// Perspective settings
 			camera.setExtentsMaxRange( object.getExtentsMaxRange() );
@@ -54,6 +105,123 @@ public class	Environment
 	}
 	
 	
+	public double	getWeldEpsilon()
+	{
+		return weldEpsilon;
+	}
+	
+	public void	setWeldEpsilon(double weldEpsilon)
+	// Sets the grid size within which duplicate vertices are merged by the next load
+	// 0 merges exact duplicates only, a negative value disables welding
+	{
+		this.weldEpsilon = weldEpsilon;
+	}
+	
+	public int	getNumMerged()
+	// Returns the number of vertices merged by the last load
+	{
+		return numMerged;
+	}
+	
+	
+	/* Spatial index
+	---------------------------------------------------------------------- */
+	public BVH	getIndex()
+	// Returns the spatial index of the object, or null while it is being (re)built
+	{
+		try
+		{
+			BVH	bvh = (index != null && index.isDone() ? index.get() : null);
+			return (bvh != null && bvh.isBuiltFrom(object) ? bvh : null);
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+	
+	public BVH.Hit	pick(Point2D screen, double pixelRadius)
+	// Returns the nearest triangle or path segment under the screen point (segments within the pixel radius),
+	// or null if none or if the index is not built yet
+	// The pick ray is cast through the depth range of the object, nearest the camera first
+	// Perspective pick rays are curved, so they are followed in straight pieces
+	{
+		BVH	bvh = getIndex();
+		if (bvh == null || bvh.size() == 0)
+		{
+			return null;
+		}
+		
+		// Depth range of the index bounds
+		ViewTransform	view = camera.getViewTransform();
+		Point3D	min = bvh.getMin(), max = bvh.getMax();
+		double	near = Double.NEGATIVE_INFINITY, far = Double.POSITIVE_INFINITY;
+		for (int corner = 0; corner < 8; corner++)
+		{
+			double	depth = view.rotateX(((corner & 1) == 0 ? min : max).getX(), 
+			                             ((corner & 2) == 0 ? min : max).getY(), 
+			                             ((corner & 4) == 0 ? min : max).getZ());
+			near = Math.max(near, depth);
+			far = Math.min(far, depth);
+		}
+		double	margin = 1e-3 * (near - far) + pixelRadius / camera.getZoom();
+		near += margin;
+		far -= margin;
+		
+		Projector	projector = camera.getProjector();
+		double[]	projected = new double[2];
+		double	x = screen.getX(), y = screen.getY();
+		double	depth = near, step = near - far, minStep = step / 4096;
+		Point3D	from = projector.unprojectScreen(x, y, depth, camera);
+		double	fromScaling = projector.project3DtoScreen(from.getX(), from.getY(), from.getZ(), camera, projected);
+		while (depth > far)
+		{
+			// Halves the piece until its middle is close enough to the ray
+			double	nextDepth = Math.max(far, depth - step);
+			Point3D	to = projector.unprojectScreen(x, y, nextDepth, camera);
+			Point3D	middle = projector.unprojectScreen(x, y, (depth + nextDepth) / 2, camera);
+			Point3D	chord = (Point3D) from.getSum(to).getQuotient(2);
+			double	scaling = projector.project3DtoScreen(middle.getX(), middle.getY(), middle.getZ(), camera, projected);
+			if (step > minStep && middle.getDistanceFrom(chord) * camera.getZoom() * scaling > pickTolerance)
+			{
+				step /= 2;
+				continue;
+			}
+			
+			double	toScaling = projector.project3DtoScreen(to.getX(), to.getY(), to.getZ(), camera, projected);
+			double	radius = pixelRadius / (camera.getZoom() * Math.min(fromScaling, toScaling));
+			BVH.Hit	hit = bvh.castRay(from, (Point3D) to.getDifference(from), radius, 1);
+			if (hit != null)
+			{
+				return hit;
+			}
+			from = to;
+			fromScaling = toScaling;
+			depth = nextDepth;
+			step *= 2;
+		}
+		return null;
+	}
+	
+	private void	buildIndex()
+	// Starts building the index of the current object, cancelling any build it supersedes
+	// The meshes are snapshot here, on the thread that modifies them, and the builder only reads the snapshot
+	{
+		if (index != null)
+		{
+			index.cancel(false);
+		}
+		final BVH.Snapshot	snapshot = new BVH.Snapshot(object);
+		index = indexBuilder.submit(new Callable<BVH>()
+		{
+			public BVH	call()
+			{
+				return new BVH(snapshot, ForkJoinPool.commonPool());
+			}
+		});
+	}
+	
+	
 	/* Rendering
 	---------------------------------------------------------------------- */
 	public void	render()
@@ -64,6 +232,58 @@ public class	Environment
 	public void	paint(Graphics g)
 	{
 		renderer.paint(g);
-		camera.paint(g);
+		
+		Formatter	f = new Formatter();
+		f.format("Culled: %d back faces, %d off-screen, %d sub-pixel", 
+		         getNumBackFaces(), getNumOffScreen(), getNumSubPixel());
+		if (!camera.isBSPSorted())
+		{
+			camera.paint(g, f.toString());
+			return;
+		}
+		
+		// BSP tree statistics, once all trees are built
+		java.util.List<BSPTree>	trees = renderer.getBSPTrees();
+		Formatter	bsp = new Formatter();
+		if (trees == null && renderer.getNumFailedBSPTrees() > 0)
+		{
+			bsp.format("BSP: %d tree builds failed, sorting by distance", renderer.getNumFailedBSPTrees());
+		}
+		else
+		if (trees == null)
+		{
+			bsp.format("BSP: building trees...");
+		}
+		else
+		{
+			int	numNodes = 0, numSplits = 0;
+			double	buildTime = 0;
+			for (BSPTree tree : trees)
+			{
+				numNodes += tree.getNumNodes();
+				numSplits += tree.getNumSplits();
+				buildTime += tree.getBuildTime();
+			}
+			bsp.format("BSP: %d nodes, %d splits, built in %.1f ms", numNodes, numSplits, buildTime);
+		}
+		camera.paint(g, f.toString(), bsp.toString());
+	}
+	
+	public int	getNumBackFaces()
+	// Returns the number of triangles skipped by back-face culling in the last render
+	{
+		return renderer.getNumBackFaces();
+	}
+	
+	public int	getNumOffScreen()
+	// Returns the number of mesh primitives skipped as off-screen in the last render
+	{
+		return renderer.getNumOffScreen();
+	}
+	
+	public int	getNumSubPixel()
+	// Returns the number of mesh primitives drawn as single points in the last render
+	{
+		return renderer.getNumSubPixel();
 	}
 }
\ No newline at end of file
@@ -18,14 +18,17 @@ public class	MPPReader extends ObjectReader
 	{
 		try
 		{
-			Group	object = new Group();
+			PathMesh	mesh = new PathMesh();
 			Scanner	in = new Scanner(file);
 			
 			// Ignores any non-data before the data set
 			while (in.hasNext() && !in.next().equals("..."))
 				;
 			
-			Group	path = new Group();
+			// Previous point, added to the mesh only once a segment starts there
+			double	prevX = 0, prevY = 0, prevZ = 0;
+			int	prev = -1;		// Index of the previous point, -1 if not yet added
+			boolean	hasPrev = false;
 			while (in.hasNext())
 			{
 				double	x, y, z, velocity, intensity;
@@ -39,23 +42,29 @@ public class	MPPReader extends ObjectReader
 				velocity = in.nextDouble();
 				intensity = in.nextDouble();
 				
-				// Appends points to the current path while the laser intensity is non-zero
-				if (intensity == 0)
-				{
-					path.clear();
-				}
-				path.add(new Point3D(x, y, z));
-				
-				// Loads a completed path
-				if (path.size() >= 2)
+				// Appends a segment from the previous point while the laser intensity is non-zero
+				int	current = -1;
+				if (intensity != 0 && hasPrev)
 				{
-					object.add(path);
-					path.clear();
-					path.add(new Point3D(x, y, z));
+					if (prev < 0)
+					{
+						prev = mesh.addVertex(prevX, prevY, prevZ);
+					}
+					current = mesh.addVertex(x, y, z);
+					mesh.addSegment(prev, current);
 				}
+				prevX = x;
+				prevY = y;
+				prevZ = z;
+				prev = current;
+				hasPrev = true;
 			}
 			
 			in.close();
+			mesh.trimToSize();
+			
+			Group	object = new Group();
+			object.add(mesh);
 			return object;
 		}
 		catch (IOException e)
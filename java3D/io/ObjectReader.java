@@ -13,10 +13,25 @@ import java.io.*;
 
 public abstract class	ObjectReader
 {
-	abstract GraphicObject	read(File file);
+	public abstract GraphicObject	read(File file);
 	
 	public static GraphicObject	read(String filename)
 	// Auto-detects the file format and returns the object loaded from the file
+	{
+		ObjectReader	reader = getReader(filename);
+		if (reader != null)
+		{
+			return reader.read(new File(filename));
+		}
+		else
+		// Invalid file format
+		{
+			return null;
+		}
+	}
+	
+	public static ObjectReader	getReader(String filename)
+	// Returns a reader for the file format, or null if the format is not supported
 	{
 		// Selects a file reader
 		ObjectReader	reader = null;
@@ -33,15 +48,6 @@ public abstract class	ObjectReader
 			reader = new MPPReader();
 		}
 		
-		// Reads the file
-		if (reader != null)
-		{
-			return reader.read(new File(filename));
-		}
-		else
-		// Invalid file format
-		{
-			return null;
-		}
+		return reader;
 	}
 }
\ No newline at end of file
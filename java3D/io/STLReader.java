@@ -14,11 +14,40 @@ import java.util.*;
 
 public class	STLReader extends ObjectReader
 {
+	private double	weldEpsilon = 0;		// Negative to disable vertex welding
+	private int	numMerged = 0;
+	
+	
+	/* Settings
+	---------------------------------------------------------------------- */
+	public double	getWeldEpsilon()
+	{
+		return weldEpsilon;
+	}
+	
+	public void	setWeldEpsilon(double weldEpsilon)
+	// Sets the grid size within which duplicate vertices are merged on load
+	// 0 merges exact duplicates only, a negative value disables welding
+	{
+		this.weldEpsilon = weldEpsilon;
+	}
+	
+	public int	getNumMerged()
+	// Returns the number of vertices merged by the last read
+	{
+		return numMerged;
+	}
+	
+	
+	/* Reading
+	---------------------------------------------------------------------- */
 	public GraphicObject	read(File file)
 	{
 		try
 		{
-			Group	object = new Group();
+			TriangleMesh	mesh = new TriangleMesh();
+			double[]	polygon = new double[9];
+			double[]	normal = new double[3];
 			Scanner	in = new Scanner(file);
 			
 			// Ignores any non-data before the data set
@@ -33,28 +62,51 @@ public class	STLReader extends ObjectReader
 					in.next();
 				if (!in.hasNext())		// EOF
 					break;
-				in.nextDouble();		// Ignores normal vector x component
-				in.nextDouble();		// Ignores normal vector y component
-				in.nextDouble();		// Ignores normal vector z component
+				normal[0] = in.nextDouble();		// Normal vector x component
+				normal[1] = in.nextDouble();		// Normal vector y component
+				normal[2] = in.nextDouble();		// Normal vector z component
 				in.next();		// Ignores "outer"
 				in.next();		// Ignores "loop"
 				if (!in.hasNext())		// Unexpected EOF
 					break;
 				
 				// Reads data
-				Group	polygon = new Group();
-				for (int i = 0; in.next().equalsIgnoreCase("vertex"); i++)
+				int	numVertices = 0;
+				while (in.next().equalsIgnoreCase("vertex"))
 				{
-					double	x, y, z;
-					x = in.nextDouble();
-					y = in.nextDouble();
-					z = in.nextDouble();
-					polygon.add(new Point3D(x, y, z));
+					int	i = 3 * numVertices++;
+					if (i == polygon.length)
+					{
+						polygon = Arrays.copyOf(polygon, 2 * polygon.length);
+					}
+					polygon[i]   = in.nextDouble();		// x
+					polygon[i+1] = in.nextDouble();		// y
+					polygon[i+2] = in.nextDouble();		// z
+				}
+				
+				// Stores the facet as a fan of triangles (a single triangle for valid STL)
+				// Zero normals are kept, as the mesh then uses the winding instead
+				for (int i = 1; i < numVertices-1; i++)
+				{
+					mesh.addVertex(polygon[0], polygon[1], polygon[2]);
+					mesh.addVertex(polygon[3*i], polygon[3*i+1], polygon[3*i+2]);
+					mesh.addVertex(polygon[3*i+3], polygon[3*i+4], polygon[3*i+5]);
+					mesh.addNormal(normal[0], normal[1], normal[2]);
 				}
-				object.add(polygon);
 			}
 			
 			in.close();
+			
+			// Shares duplicate vertices between adjacent facets
+			numMerged = 0;
+			if (weldEpsilon >= 0)
+			{
+				numMerged = mesh.weld(weldEpsilon);
+			}
+			mesh.trimToSize();
+			
+			Group	object = new Group();
+			object.add(mesh);
 			return object;
 		}
 		catch (IOException e)
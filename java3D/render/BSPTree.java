@@ -0,0 +1,546 @@
+/* ------------------------------------------------------------
+   About:      BSP tree class
+               Partitions mesh triangles by their planes for
+               view-independent back-to-front ordering.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java3D.storage.*;
+import java.util.*;
+
+public class	BSPTree
+{
+	private TriangleMesh	fragments = new TriangleMesh();		// Triangles (split where they cross a plane), grouped by node
+	private TriangleMesh	source;
+	private int	sourceModCount;
+	
+	// Nodes: partition plane (a*x + b*y + c*z + d = 0), children, and the range of coplanar fragments
+	private double[]	planeA, planeB, planeC, planeD;
+	private int[]	front, back;		// Child node indices, -1 if none
+	private int[]	first, count;
+	private int	numNodes = 0;
+	
+	// Statistics
+	private long	buildTime;		// Nanoseconds
+	private int	numSplits = 0;		// Source triangles (or fragments) split by a plane
+	
+	private int[]	stack = new int[0];		// Traversal stack, reused
+	
+	
+	/* Constructors
+	---------------------------------------------------------------------- */
+	public	BSPTree(TriangleMesh mesh)
+	// Builds the tree (may take a while for large meshes)
+	{
+		long	start = System.nanoTime();
+		source = mesh;
+		sourceModCount = mesh.getModCount();
+		new Builder(mesh).build();
+		buildTime = System.nanoTime() - start;
+	}
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public TriangleMesh	getMesh()
+	// Returns the partitioned triangles, which are the ones traversed
+	{
+		return fragments;
+	}
+	
+	public boolean	isBuiltFrom(Mesh mesh)
+	// Returns whether the tree is up to date with the given mesh
+	{
+		return mesh == source && mesh.getModCount() == sourceModCount;
+	}
+	
+	public double	getBuildTime()
+	// Returns the build time in milliseconds
+	{
+		return buildTime / 1e6;
+	}
+	
+	public int	getNumNodes()
+	{
+		return numNodes;
+	}
+	
+	public int	getNumSplits()
+	{
+		return numSplits;
+	}
+	
+	public String	toString()
+	{
+		Formatter	f = new Formatter();
+		f.format("BSP tree: %d triangles -> %d fragments, %d nodes, %d splits, built in %.1f ms", 
+		         source.size(), fragments.size(), numNodes, numSplits, getBuildTime());
+		return f.toString();
+	}
+	
+	
+	/* Traversal
+	---------------------------------------------------------------------- */
+	public int	traverse(double dx, double dy, double dz, int[] order)
+	// Stores the fragment indices in back-to-front order as seen along the given direction (towards 
+	// the viewer), which is how both projectors draw; returns the number of fragments stored (order 
+	// must hold getMesh().size() elements)
+	{
+		if (stack.length < numNodes + 1)
+		{
+			stack = new int[numNodes + 1];
+		}
+		
+		// Nodes are pushed as their index, node fragments as the complement of the node index
+		int	size = 0, n = 0;
+		if (numNodes > 0)
+		{
+			stack[size++] = 0;
+		}
+		while (size > 0)
+		{
+			int	node = stack[--size];
+			if (node < 0)
+			{
+				node = ~node;
+				for (int i = first[node]; i < first[node] + count[node]; i++)
+				{
+					order[n++] = i;
+				}
+				continue;
+			}
+			
+			// Draws the far side, then the node, then the near side
+			boolean	isEyeInFront = (planeA[node] * dx + planeB[node] * dy + planeC[node] * dz >= 0);
+			int	near = (isEyeInFront ? front[node] : back[node]);
+			int	far = (isEyeInFront ? back[node] : front[node]);
+			if (near >= 0)
+			{
+				stack[size++] = near;
+			}
+			stack[size++] = ~node;
+			if (far >= 0)
+			{
+				stack[size++] = far;
+			}
+		}
+		return n;
+	}
+	
+	
+	/* Building
+	---------------------------------------------------------------------- */
+	private class	Builder
+	{
+		// Working triangles (three vertex indices each), including split fragments
+		private double[]	vx, vy, vz;
+		private int	numVertices = 0;
+		private int[]	tri;
+		private int[]	sourceTri;		// Source mesh triangle of each working triangle, whose normal its fragments keep
+		private int	numTris = 0;
+		private double	epsilon;		// Plane distance treated as on the plane
+		
+		private int[][]	nodeTris = new int[16][];		// Coplanar triangles of each node
+		private int[]	nodeNumTris = new int[16];
+		
+		private static final int	NUM_CANDIDATES = 5;		// Triangle planes evaluated per node
+		private static final int	SAMPLE_SIZE = 64;		// Triangles scored per candidate
+		
+		public	Builder(TriangleMesh mesh)
+		{
+			vx = new double[mesh.getNumVertices() + 16];
+			vy = new double[vx.length];
+			vz = new double[vx.length];
+			for (int v = 0; v < mesh.getNumVertices(); v++)
+			{
+				addVertex(mesh.getX(v), mesh.getY(v), mesh.getZ(v));
+			}
+			tri = new int[3 * mesh.size() + 48];
+			sourceTri = new int[tri.length / 3];
+			for (int t = 0; t < mesh.size(); t++)
+			{
+				addTriangle(mesh.getVertexIndex(t, 0), mesh.getVertexIndex(t, 1), mesh.getVertexIndex(t, 2), t);
+			}
+			double	range = mesh.getExtentsMaxRange();
+			epsilon = 1e-6 * (range > 0 ? range : 1);		// Allows for single-precision (STL) coordinates
+			fragments.setAttr(mesh.getAttr(null));
+		}
+		
+		public void	build()
+		{
+			planeA = new double[16];
+			planeB = new double[16];
+			planeC = new double[16];
+			planeD = new double[16];
+			front = new int[16];
+			back = new int[16];
+			
+			// Partitions iteratively (convex meshes produce very deep trees)
+			Deque<int[]>	lists = new ArrayDeque<int[]>();
+			Deque<Integer>	nodes = new ArrayDeque<Integer>();
+			int[]	all = new int[numTris];
+			for (int t = 0; t < numTris; t++)
+			{
+				all[t] = t;
+			}
+			if (numTris > 0)
+			{
+				nodes.push(newNode());
+				lists.push(all);
+			}
+			while (!nodes.isEmpty())
+			{
+				partition(nodes.pop(), lists.pop(), nodes, lists);
+			}
+			
+			// Stores the fragments grouped by node (with the normals of their source triangles), 
+			// then merges the shared vertices
+			double[]	normal = new double[3];
+			first = new int[numNodes];
+			count = new int[numNodes];
+			for (int node = 0; node < numNodes; node++)
+			{
+				first[node] = fragments.size();
+				count[node] = nodeNumTris[node];
+				for (int i = 0; i < nodeNumTris[node]; i++)
+				{
+					int	t = nodeTris[node][i];
+					for (int corner = 0; corner < 3; corner++)
+					{
+						int	v = tri[3*t + corner];
+						fragments.addVertex(vx[v], vy[v], vz[v]);
+					}
+					if (source.hasNormals())
+					{
+						source.getNormal(sourceTri[t], normal);
+						fragments.addNormal(normal[0], normal[1], normal[2]);
+					}
+				}
+				nodeTris[node] = null;
+			}
+			fragments.weld(0);
+		}
+		
+		private void	partition(int node, int[] list, Deque<Integer> nodes, Deque<int[]> lists)
+		// Splits the triangles by the best candidate plane into coplanar, front, and back sets
+		{
+			if (!choosePlane(node, list))
+			// No usable plane (degenerate triangles only)
+			{
+				planeA[node] = planeB[node] = planeC[node] = planeD[node] = 0;
+				front[node] = back[node] = -1;
+				setNodeTris(node, list, list.length);
+				return;
+			}
+			
+			double	a = planeA[node], b = planeB[node], c = planeC[node], d = planeD[node];
+			int[]	coplanar = new int[16], inFront = new int[16], inBack = new int[16];
+			int	numCoplanar = 0, numFront = 0, numBack = 0;
+			double[]	dist = new double[3];
+			for (int t : list)
+			{
+				int	side = classify(t, a, b, c, d, dist);
+				if (side == 0)
+				{
+					coplanar = append(coplanar, numCoplanar++, t);
+				}
+				else
+				if (side == 1)
+				{
+					inFront = append(inFront, numFront++, t);
+				}
+				else
+				if (side == -1)
+				{
+					inBack = append(inBack, numBack++, t);
+				}
+				else
+				// Splits the triangle into front and back fragments
+				{
+					numSplits++;
+					int[]	pieces = split(t, dist);
+					for (int i = 1; i <= pieces[0]; i++)
+					{
+						inFront = append(inFront, numFront++, pieces[i]);
+					}
+					for (int i = pieces[0] + 1; i < pieces.length; i++)
+					{
+						inBack = append(inBack, numBack++, pieces[i]);
+					}
+				}
+			}
+			
+			// Gives up on planes that do not separate anything (axis-aligned planes through identical centers)
+			if (numCoplanar == 0 && (numFront == 0 || numBack == 0))
+			{
+				front[node] = back[node] = -1;
+				setNodeTris(node, list, list.length);
+				return;
+			}
+			
+			setNodeTris(node, coplanar, numCoplanar);
+			front[node] = -1;
+			back[node] = -1;
+			if (numFront > 0)
+			{
+				int	child = newNode();		// May reallocate the node arrays
+				front[node] = child;
+				nodes.push(child);
+				lists.push(Arrays.copyOf(inFront, numFront));
+			}
+			if (numBack > 0)
+			{
+				int	child = newNode();
+				back[node] = child;
+				nodes.push(child);
+				lists.push(Arrays.copyOf(inBack, numBack));
+			}
+		}
+		
+		private static final int	SPANNING = Integer.MIN_VALUE;
+		
+		private int	classify(int t, double a, double b, double c, double d, double[] dist)
+		// Returns 0 if the triangle lies on the plane, 1 if in front, -1 if behind, SPANNING if split
+		{
+			boolean	isFront = false, isBack = false;
+			for (int corner = 0; corner < 3; corner++)
+			{
+				int	v = tri[3*t + corner];
+				dist[corner] = a * vx[v] + b * vy[v] + c * vz[v] + d;
+				isFront |= dist[corner] > epsilon;
+				isBack |= dist[corner] < -epsilon;
+			}
+			return (isFront ? (isBack ? SPANNING : 1) : (isBack ? -1 : 0));
+		}
+		
+		private int[]	split(int t, double[] dist)
+		// Clips the triangle against the plane and triangulates both sides
+		// Returns { number of front triangles, front triangles..., back triangles... }
+		{
+			int[]	frontPoly = new int[4], backPoly = new int[4];
+			int	numFront = 0, numBack = 0;
+			for (int corner = 0; corner < 3; corner++)
+			{
+				int	next = (corner + 1) % 3;
+				int	va = tri[3*t + corner], vb = tri[3*t + next];
+				double	da = dist[corner], db = dist[next];
+				int	sa = (da > epsilon ? 1 : (da < -epsilon ? -1 : 0));
+				int	sb = (db > epsilon ? 1 : (db < -epsilon ? -1 : 0));
+				
+				if (sa >= 0)
+				{
+					frontPoly[numFront++] = va;
+				}
+				if (sa <= 0)
+				{
+					backPoly[numBack++] = va;
+				}
+				if (sa * sb < 0)
+				// Edge crosses the plane
+				{
+					double	s = da / (da - db);
+					int	v = addVertex(vx[va] + (vx[vb] - vx[va]) * s, 
+					                  vy[va] + (vy[vb] - vy[va]) * s, 
+					                  vz[va] + (vz[vb] - vz[va]) * s);
+					frontPoly[numFront++] = v;
+					backPoly[numBack++] = v;
+				}
+			}
+			
+			// Fan triangulation
+			int[]	pieces = new int[1 + (numFront - 2) + (numBack - 2)];
+			pieces[0] = numFront - 2;
+			int	n = 1;
+			for (int i = 1; i < numFront - 1; i++)
+			{
+				pieces[n++] = addTriangle(frontPoly[0], frontPoly[i], frontPoly[i + 1], sourceTri[t]);
+			}
+			for (int i = 1; i < numBack - 1; i++)
+			{
+				pieces[n++] = addTriangle(backPoly[0], backPoly[i], backPoly[i + 1], sourceTri[t]);
+			}
+			return pieces;
+		}
+		
+		private boolean	choosePlane(int node, int[] list)
+		// Stores the candidate plane that splits the fewest triangles and best balances both sides
+		// Candidates are the planes of a few triangles and an axis-aligned plane through the median center
+		{
+			double[]	plane = new double[4];
+			double[]	dist = new double[3];
+			double	bestScore = Double.POSITIVE_INFINITY;
+			int	step = Math.max(1, list.length / NUM_CANDIDATES);
+			for (int i = 0; i <= NUM_CANDIDATES; i++)
+			{
+				boolean	isValid = (i < NUM_CANDIDATES ? i * step < list.length && getTrianglePlane(list[i * step], plane) 
+				                                      : getMedianPlane(list, plane));
+				if (!isValid)
+				{
+					continue;
+				}
+				
+				// Scores the plane on a sample of the triangles
+				int	numFront = 0, numBack = 0, numSpanning = 0;
+				int	sampleStep = Math.max(1, list.length / SAMPLE_SIZE);
+				for (int j = 0; j < list.length; j += sampleStep)
+				{
+					int	side = classify(list[j], plane[0], plane[1], plane[2], plane[3], dist);
+					if (side == SPANNING)
+					{
+						numSpanning++;
+					}
+					else
+					if (side > 0)
+					{
+						numFront++;
+					}
+					else
+					if (side < 0)
+					{
+						numBack++;
+					}
+				}
+				double	score = 8 * numSpanning + Math.abs(numFront - numBack);
+				if (score < bestScore)
+				{
+					bestScore = score;
+					planeA[node] = plane[0];
+					planeB[node] = plane[1];
+					planeC[node] = plane[2];
+					planeD[node] = plane[3];
+				}
+			}
+			return bestScore < Double.POSITIVE_INFINITY;
+		}
+		
+		private boolean	getTrianglePlane(int t, double[] plane)
+		// Returns false for degenerate triangles
+		{
+			int	v0 = tri[3*t], v1 = tri[3*t + 1], v2 = tri[3*t + 2];
+			double	ux = vx[v1] - vx[v0], uy = vy[v1] - vy[v0], uz = vz[v1] - vz[v0];
+			double	wx = vx[v2] - vx[v0], wy = vy[v2] - vy[v0], wz = vz[v2] - vz[v0];
+			double	nx = uy * wz - uz * wy;
+			double	ny = uz * wx - ux * wz;
+			double	nz = ux * wy - uy * wx;
+			double	length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (length <= epsilon * epsilon)
+			{
+				return false;
+			}
+			plane[0] = nx / length;
+			plane[1] = ny / length;
+			plane[2] = nz / length;
+			plane[3] = -(plane[0] * vx[v0] + plane[1] * vy[v0] + plane[2] * vz[v0]);
+			return true;
+		}
+		
+		private boolean	getMedianPlane(int[] list, double[] plane)
+		// Returns false if the sampled triangle centers coincide
+		{
+			int	sampleStep = Math.max(1, list.length / SAMPLE_SIZE);
+			int	n = (list.length + sampleStep - 1) / sampleStep;
+			double[][]	centers = new double[3][n];
+			for (int i = 0, j = 0; j < list.length; i++, j += sampleStep)
+			{
+				int	t = list[j];
+				for (int corner = 0; corner < 3; corner++)
+				{
+					int	v = tri[3*t + corner];
+					centers[0][i] += vx[v] / 3;
+					centers[1][i] += vy[v] / 3;
+					centers[2][i] += vz[v] / 3;
+				}
+			}
+			
+			// Splits the longest axis of the centers
+			int	axis = -1;
+			double	longest = epsilon;
+			for (int k = 0; k < 3; k++)
+			{
+				Arrays.sort(centers[k]);
+				if (centers[k][n - 1] - centers[k][0] > longest)
+				{
+					longest = centers[k][n - 1] - centers[k][0];
+					axis = k;
+				}
+			}
+			if (axis < 0)
+			{
+				return false;
+			}
+			plane[0] = plane[1] = plane[2] = 0;
+			plane[axis] = 1;
+			plane[3] = -centers[axis][n / 2];
+			return true;
+		}
+		
+		private int	newNode()
+		{
+			if (numNodes == front.length)
+			{
+				int	length = 2 * numNodes;
+				planeA = Arrays.copyOf(planeA, length);
+				planeB = Arrays.copyOf(planeB, length);
+				planeC = Arrays.copyOf(planeC, length);
+				planeD = Arrays.copyOf(planeD, length);
+				front = Arrays.copyOf(front, length);
+				back = Arrays.copyOf(back, length);
+			}
+			if (numNodes == nodeTris.length)
+			{
+				nodeTris = Arrays.copyOf(nodeTris, 2 * numNodes);
+				nodeNumTris = Arrays.copyOf(nodeNumTris, 2 * numNodes);
+			}
+			return numNodes++;
+		}
+		
+		private void	setNodeTris(int node, int[] list, int n)
+		{
+			nodeTris[node] = Arrays.copyOf(list, n);
+			nodeNumTris[node] = n;
+		}
+		
+		private int	addVertex(double x, double y, double z)
+		{
+			if (numVertices == vx.length)
+			{
+				vx = Arrays.copyOf(vx, 2 * numVertices);
+				vy = Arrays.copyOf(vy, 2 * numVertices);
+				vz = Arrays.copyOf(vz, 2 * numVertices);
+			}
+			vx[numVertices] = x;
+			vy[numVertices] = y;
+			vz[numVertices] = z;
+			return numVertices++;
+		}
+		
+		private int	addTriangle(int v0, int v1, int v2, int sourceIndex)
+		{
+			if (3 * numTris == tri.length)
+			{
+				tri = Arrays.copyOf(tri, 2 * tri.length);
+				sourceTri = Arrays.copyOf(sourceTri, tri.length / 3);
+			}
+			tri[3*numTris] = v0;
+			tri[3*numTris + 1] = v1;
+			tri[3*numTris + 2] = v2;
+			sourceTri[numTris] = sourceIndex;
+			return numTris++;
+		}
+		
+		private int[]	append(int[] list, int n, int t)
+		{
+			if (n == list.length)
+			{
+				list = Arrays.copyOf(list, 2 * n + 4);
+			}
+			list[n] = t;
+			return list;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+/* ------------------------------------------------------------
+   About:      Depth sorter class
+               Orders objects by descending camera distance using a
+               radix sort of primitive depth keys.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+class	DepthSorter
+{
+	// Sort keys: quantized depth (high 31 bits, nearest largest) and list position (low 32 bits)
+	// The sign bit stays clear so that keys also compare correctly as signed values
+	private static final long	maxDepth = 0x7FFFFFFFL;
+	private long[]	keys = new long[0], temp = new long[0];
+	private int[]	counts = new int[256];		// Radix digit histogram
+	private double	minDistance, scale;		// Depth quantization
+	
+	// Temporal coherence
+	private int[]	previous = new int[0];		// List positions in the previous drawing order
+	private int	numPrevious = -1;
+	private static final int	maxMoves = 4;		// Insertion sort moves allowed per key before falling back to a full sort
+	private boolean	wasRepaired = false;
+	private int	skipRepairs = 0, numSkips = 0;		// Backs off from repairs that keep failing (continuous fast motion)
+	
+	
+	/* Sorting
+	---------------------------------------------------------------------- */
+	public void	sort(double[] distances, int count, int[] order, boolean isCoherent)
+	// Stores the list positions in order of descending distance (equal distances keep their listed order)
+	// If the list is unchanged since the previous sort (isCoherent), the previous order is repaired instead,
+	// which costs near-linear time while the camera moves in small steps
+	{
+		if (keys.length < count)
+		{
+			keys = new long[count];
+			temp = new long[count];
+			previous = new int[count];
+		}
+		quantize(distances, count);
+		
+		wasRepaired = false;
+		if (isCoherent && count == numPrevious && skipRepairs-- <= 0)
+		{
+			wasRepaired = repair(distances, count);
+			numSkips = (wasRepaired ? 0 : Math.min(64, 2 * numSkips + 1));
+			skipRepairs = numSkips;
+		}
+		if (!wasRepaired)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				keys[i] = getKey(distances, i);
+			}
+			
+			// Stable LSD radix sort of the depth bits (the low bits are already in order)
+			for (int shift = 32; shift < 64; shift += 8)
+			{
+				sortDigit(count, shift);
+			}
+		}
+		
+		for (int i = 0; i < count; i++)
+		{
+			order[i] = previous[i] = (int) keys[i];
+		}
+		numPrevious = count;
+	}
+	
+	public boolean	wasRepaired()
+	// Returns whether the last sort repaired the previous order
+	{
+		return wasRepaired;
+	}
+	
+	private void	quantize(double[] distances, int count)
+	// Maps the distance range onto 31 bits
+	{
+		double	min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++)
+		{
+			min = Math.min(min, distances[i]);
+			max = Math.max(max, distances[i]);
+		}
+		minDistance = min;
+		scale = (max > min ? maxDepth / (max - min) : 0);
+	}
+	
+	private long	getKey(double[] distances, int position)
+	{
+		long	depth = maxDepth - Math.min((long) ((distances[position] - minDistance) * scale), maxDepth);		// Ascending keys, descending distances
+		return (depth << 32) | position;
+	}
+	
+	private boolean	repair(double[] distances, int count)
+	// Insertion sorts the keys in the previous drawing order
+	// Returns false if the order changed too much (camera jump), leaving the keys unsorted
+	{
+		for (int i = 0; i < count; i++)
+		{
+			temp[i] = getKey(distances, i);
+		}
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = temp[previous[i]];
+		}
+		
+		long	movesLeft = (long) maxMoves * count;
+		for (int i = 1; i < count; i++)
+		{
+			long	key = keys[i];
+			int	j = i - 1;
+			while (j >= 0 && keys[j] > key)
+			{
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			
+			movesLeft -= i - 1 - j;
+			if (movesLeft < 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void	sortDigit(int count, int shift)
+	// Sorts the keys by the 8-bit digit at the given shift, keeping the order of equal digits
+	{
+		java.util.Arrays.fill(counts, 0);
+		for (int i = 0; i < count; i++)
+		{
+			counts[(int) (keys[i] >>> shift) & 0xFF]++;
+		}
+		
+		// Skips digits shared by every key
+		if (count == 0 || counts[(int) (keys[0] >>> shift) & 0xFF] == count)
+		{
+			return;
+		}
+		
+		// Converts the digit counts to starting positions
+		int	position = 0;
+		for (int digit = 0; digit < 256; digit++)
+		{
+			int	n = counts[digit];
+			counts[digit] = position;
+			position += n;
+		}
+		
+		for (int i = 0; i < count; i++)
+		{
+			temp[counts[(int) (keys[i] >>> shift) & 0xFF]++] = keys[i];
+		}
+		
+		long[]	swap = keys;
+		keys = temp;
+		temp = swap;
+	}
+}
\ No newline at end of file
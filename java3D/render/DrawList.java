@@ -0,0 +1,472 @@
+/* ------------------------------------------------------------
+   About:      Draw list class
+               Stores the rendered primitives of a frame in drawing
+               order, in growable arrays that are reused across frames,
+               and draws the edges of runs of alike polygons in batches.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java3D.storage.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.*;
+
+class	DrawList
+{
+	// Item kinds
+	public static final byte	POLYGON = 0;		// Mesh primitive drawn like a polygon group (see Group.paint)
+	public static final byte	POINT = 1;		// Sub-pixel mesh primitive drawn as a single point
+	public static final byte	OBJECT = 2;		// Rendered whole object, drawn by itself
+	public static final int	ALL_SIDES = -1;		// Edge mask of a polygon that draws all of its edges
+	
+	// Items in drawing order
+	public byte[]	kind = new byte[0];
+	public Attributes[]	attr = new Attributes[0];		// Resolved attributes (POLYGON and POINT)
+	public boolean[]	showFill = new boolean[0];		// Overrides the attribute fill without changing the attributes
+	public int[]	first = new int[1];		// First vertex of each item, first[size] is the number of vertices
+	public int[]	edgeMask = new int[0];		// Polygon sides whose edges are drawn, one bit per side (POLYGON)
+	public GraphicObject[]	objects = new GraphicObject[0];		// Rendered objects (OBJECT)
+	public int	size = 0;
+	public boolean	isOrdered = true;		// Whether the items must be drawn in listed order (i.e. they are sorted)
+	
+	// Item vertices
+	public double[]	screenX = new double[0], screenY = new double[0];
+	public int[]	pixelRadius = new int[0];		// Point pixel radii (only used if points are shown)
+	
+	// Screen polygon of the item being drawn
+	private int[]	polygonX = new int[0], polygonY = new int[0];
+	
+	// Drawing order of the items, and the attribute groups of unordered polygons
+	private int[]	order = new int[0];
+	private int[]	groupStart = new int[0];
+	private IdentityHashMap<Attributes, Integer>	groups = new IdentityHashMap<Attributes, Integer>();
+	
+	// Batched edges of a run of polygons
+	private Path2D.Float	path = new Path2D.Float();
+	private static final int	MAX_BATCH_SIZE = 64;		// Polygons per batch
+	
+	
+	/* Storage
+	---------------------------------------------------------------------- */
+	public void	begin(int size, boolean isOrdered)
+	// Starts a frame of the given number of items, whose kinds and first vertices are then set
+	{
+		clear();
+		this.isOrdered = isOrdered;
+		if (size > kind.length)
+		{
+			int	length = Math.max(64, size + size / 2);
+			kind = new byte[length];
+			attr = new Attributes[length];
+			showFill = new boolean[length];
+			first = new int[length + 1];
+			edgeMask = new int[length];
+			objects = new GraphicObject[length];
+		}
+		this.size = size;
+	}
+	
+	public void	allocateVertices()
+	// Makes room for the vertices of the items (once their first vertices are set)
+	{
+		int	numVertices = first[size];
+		if (numVertices > screenX.length)
+		{
+			int	length = numVertices + numVertices / 2;
+			screenX = new double[length];
+			screenY = new double[length];
+			pixelRadius = new int[length];
+		}
+	}
+	
+	public void	clear()
+	// Releases references to the attributes and rendered objects of the previous frame
+	{
+		Arrays.fill(attr, 0, size, null);
+		Arrays.fill(objects, 0, size, null);
+		size = 0;
+	}
+	
+	
+	/* Drawing
+	---------------------------------------------------------------------- */
+	public void	paint(Graphics g)
+	// Draws the items as their polygon groups and points would draw themselves, but with each
+	// run of consecutive polygons of the same attributes drawn layer by layer, and their edges in batches, 
+	// where the result is the same
+	// Unordered polygons are drawn grouped by attributes, before the other items
+	// Ordered runs showing more than one layer (e.g. sorted filled polygons with edges) are drawn polygon 
+	// by polygon: the runs of consecutive polygons that do not touch, which could be drawn layer by layer, 
+	// average under four polygons on the sample files, too few for a batch to beat drawing each edge
+	{
+		sortItems();
+		Rectangle	clip = g.getClipBounds();
+		for (int k = 0; k < size; )
+		{
+			int	item = order[k];
+			if (kind[item] != POLYGON)
+			{
+				if (kind[item] == POINT)
+				{
+					paintPoint(g, item);
+				}
+				else
+				{
+					objects[item].paint(g);
+				}
+				k++;
+				continue;
+			}
+			
+			int	end = k + 1;
+			while (end < size && kind[order[end]] == POLYGON && attr[order[end]] == attr[item] && 
+			       isFilled(order[end]) == isFilled(item))
+			{
+				end++;
+			}
+			
+			// Drawing layer by layer only reorders the polygons of a run if more than one layer is shown
+			if (!isOrdered || getNumLayers(item) <= 1)
+			{
+				paintRun(g, clip, k, end);
+			}
+			else
+			{
+				for (int j = k; j < end; j++)
+				{
+					paintPolygon(g, order[j]);
+				}
+			}
+			k = end;
+		}
+	}
+	
+	private void	sortItems()
+	// Lists the items in drawing order
+	{
+		if (order.length < size)
+		{
+			order = new int[kind.length];
+		}
+		if (isOrdered)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				order[i] = i;
+			}
+			return;
+		}
+		
+		// Numbers the polygon groups, two per attributes (unfilled and filled), then one for the other items
+		groups.clear();
+		for (int i = 0; i < size; i++)
+		{
+			if (kind[i] == POLYGON && !groups.containsKey(attr[i]))
+			{
+				groups.put(attr[i], groups.size());
+			}
+		}
+		int	numGroups = 2 * groups.size() + 1;
+		if (groupStart.length < numGroups + 1)
+		{
+			groupStart = new int[numGroups + 1];
+		}
+		
+		// Counting sort by group, keeping the listed order within each group
+		Arrays.fill(groupStart, 0, numGroups + 1, 0);
+		for (int i = 0; i < size; i++)
+		{
+			groupStart[getGroup(i) + 1]++;
+		}
+		for (int group = 0; group < numGroups; group++)
+		{
+			groupStart[group + 1] += groupStart[group];
+		}
+		for (int i = 0; i < size; i++)
+		{
+			order[groupStart[getGroup(i)]++] = i;
+		}
+	}
+	
+	private int	getGroup(int item)
+	{
+		if (kind[item] == POLYGON)
+		{
+			return 2 * groups.get(attr[item]) + (isFilled(item) ? 1 : 0);
+		}
+		return 2 * groups.size();
+	}
+	
+	private boolean	isFilled(int item)
+	{
+		return attr[item].showFill && showFill[item];
+	}
+	
+	private int	getNumLayers(int item)
+	// Returns the number of shown polygon parts (fill, edges and vertices)
+	{
+		Attributes	a = attr[item];
+		return (isFilled(item) ? 1 : 0) + (a.showEdges ? 1 : 0) + (a.showPoints ? 1 : 0);
+	}
+	
+	private void	paintRun(Graphics g, Rectangle clip, int from, int to)
+	// Draws the listed polygons from/to layer by layer: all fills, then all edges, then all vertices
+	// Opaque edges are batched into one outline, whereas translucent ones are drawn one by one
+	// since overlapping edges must blend once each
+	// Fills are always drawn one by one: a filled shape covers the same pixels as fillPolygon only through
+	// implementation details of the Java2D pipeline
+	{
+		Attributes	a = attr[order[from]];
+		boolean	canBatch = (g instanceof Graphics2D);
+		
+		// Draws filled polygons
+		if (isFilled(order[from]))
+		{
+			g.setColor(a.getFillColor());
+			for (int k = from; k < to; k++)
+			{
+				int	n = setPolygon(order[k]);
+				g.fillPolygon(polygonX, polygonY, n);
+			}
+		}
+		
+		// Draws unfilled polygons
+		if (a.showEdges)
+		{
+			g.setColor(a.getEdgeColor());
+			if (canBatch && isOpaque(a.edgeARGB) && clip != null)
+			{
+				// Lines are only drawn alike by both when unclipped, so clipped polygons are drawn by themselves
+				// (without a clip, the bounds of the device are unknown)
+				for (int k = from; k < to; k++)
+				{
+					int	n = setPolygon(order[k]);
+					if (isInside(clip, n))
+					{
+						appendSides(order[k], n);
+					}
+					else
+					{
+						drawSides(g, order[k], n);
+					}
+					if ((k - from) % MAX_BATCH_SIZE == MAX_BATCH_SIZE - 1 || k == to - 1)
+					{
+						((Graphics2D) g).draw(path);
+						path.reset();
+					}
+				}
+			}
+			else
+			{
+				for (int k = from; k < to; k++)
+				{
+					int	n = setPolygon(order[k]);
+					drawSides(g, order[k], n);
+				}
+			}
+		}
+		
+		// Draws polygon vertices
+		if (a.showPoints)
+		{
+			g.setColor(a.getPointColor());
+			for (int k = from; k < to; k++)
+			{
+				paintVertices(g, order[k]);
+			}
+		}
+	}
+	
+	private void	paintPolygon(Graphics g, int item)
+	// Draws a polygon as Group.paint does
+	{
+		int	n = setPolygon(item);
+		
+		// Draws filled polygon
+		Attributes	a = attr[item];
+		if (isFilled(item))
+		{
+			g.setColor(a.getFillColor());
+			g.fillPolygon(polygonX, polygonY, n);
+		}
+		
+		// Draws unfilled polygon
+		if (a.showEdges)
+		{
+			g.setColor(a.getEdgeColor());
+			drawSides(g, item, n);
+		}
+		
+		// Draws polygon vertices
+		if (a.showPoints)
+		{
+			g.setColor(a.getPointColor());
+			paintVertices(g, item);
+		}
+	}
+	
+	private int	setPolygon(int item)
+	// Sets the screen polygon to the item's pixels and returns its number of vertices
+	{
+		int	n = first[item + 1] - first[item];
+		if (n > polygonX.length)
+		{
+			polygonX = new int[n];
+			polygonY = new int[n];
+		}
+		for (int j = 0, v = first[item]; j < n; j++, v++)
+		{
+			polygonX[j] = (int) screenX[v];
+			polygonY[j] = (int) screenY[v];
+		}
+		return n;
+	}
+	
+	private void	appendEdges(int n)
+	// Appends the screen polygon to the batched outline
+	{
+		path.moveTo(polygonX[0], polygonY[0]);
+		for (int j = 1; j < n; j++)
+		{
+			path.lineTo(polygonX[j], polygonY[j]);
+		}
+		path.closePath();
+	}
+	
+	private void	drawSides(Graphics g, int item, int n)
+	// Draws the edges of the screen polygon along the item's drawn sides
+	{
+		if (hasAllSides(item, n))
+		{
+			g.drawPolygon(polygonX, polygonY, n);
+			return;
+		}
+		for (int side = 0; side < n; side++)
+		{
+			if (hasSide(item, side))
+			{
+				int	next = (side + 1) % n;
+				g.drawLine(polygonX[side], polygonY[side], polygonX[next], polygonY[next]);
+			}
+		}
+	}
+	
+	private void	appendSides(int item, int n)
+	// Appends the screen polygon along the item's drawn sides to the batched outline, joining adjacent sides
+	{
+		if (hasAllSides(item, n))
+		{
+			appendEdges(n);
+			return;
+		}
+		for (int side = 0; side < n; side++)
+		{
+			if (hasSide(item, side))
+			{
+				if (side == 0 || !hasSide(item, side - 1))
+				{
+					path.moveTo(polygonX[side], polygonY[side]);
+				}
+				int	next = (side + 1) % n;
+				path.lineTo(polygonX[next], polygonY[next]);
+			}
+		}
+	}
+	
+	private boolean	hasSide(int item, int side)
+	{
+		return (edgeMask[item] & (1 << side)) != 0;
+	}
+	
+	private boolean	hasAllSides(int item, int n)
+	{
+		if (edgeMask[item] == ALL_SIDES)
+		{
+			return true;
+		}
+		for (int side = 0; side < n; side++)
+		{
+			if (!hasSide(item, side))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private boolean	isInside(Rectangle clip, int n)
+	// Returns whether the screen polygon lies within the clip
+	{
+		for (int j = 0; j < n; j++)
+		{
+			if (polygonX[j] < clip.x || polygonX[j] >= clip.x + clip.width || 
+			    polygonY[j] < clip.y || polygonY[j] >= clip.y + clip.height)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean	isOpaque(int argb)
+	{
+		return (argb >>> 24) == 0xFF;
+	}
+	
+	private void	paintVertices(Graphics g, int item)
+	// Draws the item's vertices in the current color
+	{
+		for (int v = first[item]; v < first[item + 1]; v++)
+		{
+			paintPoint(g, screenX[v], screenY[v], pixelRadius[v]);
+		}
+	}
+	
+	private void	paintPoint(Graphics g, int item)
+	// Draws a sub-pixel primitive in the color of its topmost part (points, then edges, then fill)
+	{
+		Attributes	a = attr[item];
+		if (a.showPoints)
+		{
+			g.setColor(a.getPointColor());
+		}
+		else
+		if (a.showEdges)
+		{
+			g.setColor(a.getEdgeColor());
+		}
+		else
+		if (isFilled(item))
+		{
+			g.setColor(a.getFillColor());
+		}
+		else
+		// Nothing shown
+		{
+			return;
+		}
+		int	v = first[item];
+		paintPoint(g, screenX[v], screenY[v], 0);
+	}
+	
+	private static void	paintPoint(Graphics g, double x, double y, int pixelRadius)
+	// Draws a point as Point2D.paint does
+	{
+		if (pixelRadius > 0)
+		{
+			double	sx = x - pixelRadius;
+			double	sy = y - pixelRadius;
+			double	dia = 2 * pixelRadius;
+			g.fillOval((int) sx, (int) sy, (int) dia, (int) dia);
+		}
+		else
+		{
+			g.drawRect((int) x, (int) y, 1, 1);
+		}
+	}
+}
\ No newline at end of file
@@ -23,35 +23,42 @@ public class	IsometricProjector extends Projector
 	
 	public Point2D	project3Dto2D(Point3D point3D, Camera camera)
 	{
-		// Adjusts for the camera view angle
-		Point3D	rotated = new Point3D(point3D);
-		rotated.rotate(camera.getViewAngles(), camera.getRotateOrigin());
-		
-		// Discards the 3rd dimension
-		Point2D	point2D = new Point2D(rotated.getY(), rotated.getZ());
-		point2D.setAttr(point3D.getAttr());
+		// Adjusts for the camera view angle and discards the 3rd dimension
+		ViewTransform	view = camera.getViewTransform();
+		double	x = point3D.getX(), y = point3D.getY(), z = point3D.getZ();
+		Point2D	point2D = new Point2D(view.rotateY(x, y, z), view.rotateZ(x, y, z));
 		
 		// Calculates the point radius attribute
-		Attributes	attr = point2D.getAttr();
-		if (attr.showPoints)
-		{
-			switch (camera.getRenderQuality())
-			{
-				// Constant point pixel size
-				case Low:
-					attr.pixelRadius = (int) attr.pointRadius;
-					point2D.setAttr(attr);
-					break;
-				
-				// Point pixel size proportional to camera zoom
-				case Med:
-				case High:
-					attr.pixelRadius = (int) (attr.pointRadius * camera.getZoom());
-					point2D.setAttr(attr);
-					break;
-			}
-		}
+		Attributes	attr = point3D.getAttr();
+		point2D.setAttr(attr.showPoints ? attr.withPixelRadius(getPixelRadius(attr, 1, camera)) : attr);
 		
 		return point2D;
 	}
+	
+	public double	project3DtoScreen(double x, double y, double z, Camera camera, double[] screen)
+	{
+		ViewTransform	view = camera.getViewTransform();
+		screen[0] = view.toScreenX(view.rotateY(x, y, z));
+		screen[1] = view.toScreenY(view.rotateZ(x, y, z));
+		return 1;
+	}
+	
+	public Point3D	unprojectScreen(double x, double y, double depth, Camera camera)
+	{
+		ViewTransform	view = camera.getViewTransform();
+		return view.unrotate(depth, view.toCartesianX(x), view.toCartesianY(y));
+	}
+	
+	public void	project3DtoScreen(double[] x, double[] y, double[] z, int from, int to, Camera camera, 
+	                              double[] screenX, double[] screenY, double[] scaling)
+	{
+		if (isVectorized())
+		{
+			VectorProjector.projectIsometric(x, y, z, from, to, camera.getViewTransform(), screenX, screenY, scaling);
+		}
+		else
+		{
+			super.project3DtoScreen(x, y, z, from, to, camera, screenX, screenY, scaling);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+/* ------------------------------------------------------------
+   About:      Parallel loop class
+               Splits index ranges across a fork/join pool.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java.util.concurrent.*;
+
+class	ParallelLoop extends RecursiveAction
+{
+	private static final long	serialVersionUID = 1L;
+	
+	public interface	Body
+	{
+		public void	run(int from, int to);		// Processes the indices from (inclusive) to (exclusive)
+	}
+	
+	private Body	body;
+	private int	from, to;
+	private int	grain;		// Largest range processed without splitting
+	
+	
+	/* Public
+	---------------------------------------------------------------------- */
+	public static void	run(ForkJoinPool pool, int threshold, int count, Body body)
+	// Runs the body over the indices 0 to count, in parallel if count reaches the threshold
+	// Each index is processed exactly once, so results stored by index keep the serial order
+	{
+		if (pool == null || pool.getParallelism() <= 1 || count < threshold)
+		{
+			body.run(0, count);
+		}
+		else
+		{
+			// Splits into several ranges per thread for load balancing
+			int	grain = Math.max(threshold / 4, count / (4 * pool.getParallelism()) + 1);
+			pool.invoke(new ParallelLoop(body, 0, count, grain));
+		}
+	}
+	
+	
+	/* Internals
+	---------------------------------------------------------------------- */
+	private	ParallelLoop(Body body, int from, int to, int grain)
+	{
+		this.body = body;
+		this.from = from;
+		this.to = to;
+		this.grain = grain;
+	}
+	
+	protected void	compute()
+	{
+		if (to - from <= grain)
+		{
+			body.run(from, to);
+		}
+		else
+		{
+			int	mid = (from + to) >>> 1;
+			invokeAll(new ParallelLoop(body, from, mid, grain), new ParallelLoop(body, mid, to, grain));
+		}
+	}
+}
\ No newline at end of file
@@ -22,48 +22,83 @@ public class	PerspectiveProjector extends Projector
 	
 	public Point2D	project3Dto2D(Point3D point3D, Camera camera)
 	{
-		// Temporarily sets the camera rotate radius to the object size
-		double	rotateRadius = camera.getRangeMultiplier() * camera.getExtentsMaxRange();
-		
-		// Adjusts for the camera view angle
-		Point3D	rotated = new Point3D(point3D);
-		Point3D	rotateOrigin = camera.getRotateOrigin();
-		rotated.rotate(camera.getViewAngles(), rotateOrigin);
-		Point2D	point2D = new Point2D(rotated.getY(), rotated.getZ());
-		
-		// Calculates the perspective scaling factor
-		double	distance = point3D.getDistanceFrom(camera.getCameraLocation(rotateRadius));
-		distance /= camera.getPerspectiveUnit() * rotateRadius;
-		double	scaling = Math.pow(0.5, distance);
-		
-		// Calculates the 2D point shift due to the vanishing point
-		Point2D	vanishPoint = new Point2D(rotateOrigin.getY(), rotateOrigin.getZ());
-		Point2D	shift = (Point2D) point2D.getDifference(vanishPoint);
-		shift.setProduct(scaling);
-		point2D.set(vanishPoint.getSum(shift));
-		point2D.setAttr(point3D.getAttr());
+		ViewTransform	view = camera.getViewTransform();
+		double	x = point3D.getX(), y = point3D.getY(), z = point3D.getZ();
+		double	scaling = view.getScaling(x, y, z);
+		Point2D	point2D = new Point2D(project3Dto2DX(view, x, y, z, scaling), project3Dto2DY(view, x, y, z, scaling));
 		
 		// Calculates the point radius attribute
-		Attributes	attr = point2D.getAttr();
-		if (attr.showPoints)
+		Attributes	attr = point3D.getAttr();
+		point2D.setAttr(attr.showPoints ? attr.withPixelRadius(getPixelRadius(attr, scaling, camera)) : attr);
+		
+		return point2D;
+	}
+	
+	public double	project3DtoScreen(double x, double y, double z, Camera camera, double[] screen)
+	{
+		ViewTransform	view = camera.getViewTransform();
+		double	scaling = view.getScaling(x, y, z);
+		screen[0] = view.toScreenX(project3Dto2DX(view, x, y, z, scaling));
+		screen[1] = view.toScreenY(project3Dto2DY(view, x, y, z, scaling));
+		return scaling;
+	}
+	
+	public Point3D	unprojectScreen(double x, double y, double depth, Camera camera)
+	// The scaling depends on the unknown point, so it is solved for by the secant method
+	{
+		ViewTransform	view = camera.getViewTransform();
+		double	u = view.toCartesianX(x) - view.vanishX, v = view.toCartesianY(y) - view.vanishY;
+		double	s0 = 1, e0 = s0 - getScaling(view, u, v, depth, s0);
+		double	s1 = s0 - e0, e1 = s1 - getScaling(view, u, v, depth, s1);
+		for (int i = 0; i < 32 && e1 != 0 && e1 != e0; i++)
 		{
-			switch (camera.getRenderQuality())
+			double	s = s1 - e1 * (s1 - s0) / (e1 - e0);
+			if (!(s > 0 && s <= 1))
+			// Stepped out of range, falls back to a fixed-point step
+			{
+				s = s1 - e1;
+			}
+			s0 = s1;
+			e0 = e1;
+			s1 = s;
+			e1 = s1 - getScaling(view, u, v, depth, s1);
+			if (Math.abs(e1) <= 1e-14)
 			{
-				// Constant point pixel size
-				case Low:
-					attr.pixelRadius = (int) attr.pointRadius;
-					point2D.setAttr(attr);
-					break;
-				
-				// Point pixel size proportional to camera zoom
-				case Med:
-				case High:
-					attr.pixelRadius = (int) (attr.pointRadius * camera.getZoom() * scaling);
-					point2D.setAttr(attr);
-					break;
+				break;
 			}
 		}
-		
-		return point2D;
+		return view.unrotate(depth, view.vanishX + u / s1, view.vanishY + v / s1);
+	}
+	
+	private static double	getScaling(ViewTransform view, double u, double v, double depth, double scaling)
+	// Returns the scaling at the point that the given scaling would unproject to
+	{
+		Point3D	point = view.unrotate(depth, view.vanishX + u / scaling, view.vanishY + v / scaling);
+		return view.getScaling(point.getX(), point.getY(), point.getZ());
+	}
+	
+	public void	project3DtoScreen(double[] x, double[] y, double[] z, int from, int to, Camera camera, 
+	                              double[] screenX, double[] screenY, double[] scaling)
+	{
+		if (isVectorized())
+		{
+			VectorProjector.projectPerspective(x, y, z, from, to, camera.getViewTransform(), screenX, screenY, scaling);
+		}
+		else
+		{
+			super.project3DtoScreen(x, y, z, from, to, camera, screenX, screenY, scaling);
+		}
+	}
+	
+	private static double	project3Dto2DX(ViewTransform view, double x, double y, double z, double scaling)
+	// Adjusts for the camera view angle and shifts the point towards the vanishing point
+	{
+		return view.vanishX + (view.rotateY(x, y, z) - view.vanishX) * scaling;
+	}
+	
+	private static double	project3Dto2DY(ViewTransform view, double x, double y, double z, double scaling)
+	// Adjusts for the camera view angle and shifts the point towards the vanishing point
+	{
+		return view.vanishY + (view.rotateZ(x, y, z) - view.vanishY) * scaling;
 	}
 }
\ No newline at end of file
@@ -13,16 +13,47 @@ import java3D.storage.*;
 
 public abstract class	Projector
 {
+	// Batch projection uses SIMD instructions if the Vector API module is present (--add-modules jdk.incubator.vector)
+	private static final boolean	isVectorized = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	
 	public abstract String	getType();		// Returns the name of the projection type
 	public abstract Point2D	project3Dto2D(Point3D point3D, Camera camera);
+	public abstract double	project3DtoScreen(double x, double y, double z, Camera camera, double[] screen);		// Stores the screen coordinates in screen[0..1] and returns the point scaling factor
+	public abstract Point3D	unprojectScreen(double x, double y, double depth, Camera camera);		// Returns the point at the given depth (rotated X) that projects to the screen coordinates
+	
+	public void	project3DtoScreen(double[] x, double[] y, double[] z, int count, Camera camera, 
+	                              double[] screenX, double[] screenY, double[] scaling)
+	// Projects the first count coordinates at once, storing the screen coordinates and point scaling factors
+	{
+		project3DtoScreen(x, y, z, 0, count, camera, screenX, screenY, scaling);
+	}
+	
+	public void	project3DtoScreen(double[] x, double[] y, double[] z, int from, int to, Camera camera, 
+	                              double[] screenX, double[] screenY, double[] scaling)
+	// Projects the coordinates from (inclusive) to (exclusive) at once
+	{
+		double[]	screen = new double[2];
+		for (int i = from; i < to; i++)
+		{
+			scaling[i] = project3DtoScreen(x[i], y[i], z[i], camera, screen);
+			screenX[i] = screen[0];
+			screenY[i] = screen[1];
+		}
+	}
+	
+	public static boolean	isVectorized()
+	// Returns whether batch projection uses SIMD instructions
+	{
+		return isVectorized;
+	}
 	
 	public Point2D	project2DtoScreen(Point2D point2D, Camera camera)
 	{
 		// Transforms 2D Cartesian coordinates to screen coordinates
 		Point2D	screen2D = new Point2D(point2D);
-		Point2D	screenOrigin = camera.getScreenOrigin();
-		screen2D.set( screenOrigin.getX() + point2D.getX() * camera.getZoom() ,
-		              screenOrigin.getY() - point2D.getY() * camera.getZoom() );
+		ViewTransform	view = camera.getViewTransform();
+		screen2D.set( view.toScreenX(point2D.getX()) ,
+		              view.toScreenY(point2D.getY()) );
 		return screen2D;
 	}
 	
@@ -30,4 +61,19 @@ public abstract class	Projector
 	{
 		return project2DtoScreen(project3Dto2D(point3D, camera), camera);
 	}
+	
+	public int	getPixelRadius(Attributes attr, double scaling, Camera camera)
+	// Returns the point pixel size for the given point scaling factor
+	{
+		switch (camera.getRenderQuality())
+		{
+			// Constant point pixel size
+			case Low:
+				return (int) attr.pointRadius;
+			
+			// Point pixel size proportional to camera zoom
+			default:
+				return (int) (attr.pointRadius * camera.getZoom() * scaling);
+		}
+	}
 }
\ No newline at end of file
@@ -10,8 +10,10 @@
 package java3D.render;
 
 import java3D.storage.*;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class	Renderer
 {
@@ -20,194 +22,987 @@ public class	Renderer
 	public	Renderer()
 	{}
 	
-	public GraphicObject	render(GraphicObject object, Camera camera)
-	// Caches and renders the given object
+	public void	render(GraphicObject object, Camera camera)
+	// Renders the given object through a read-only view (the object is neither copied nor modified)
+	// Mesh primitives are rendered into buffers that are reused across frames, so that a steady-state
+	// frame (e.g. during a camera orbit) allocates next to nothing
 	{
-		Group	group = new Group(object);
 		this.camera = camera;
+		inheritedAttr = object.getAttr();
+		camera.getViewTransform();		// Builds the shared view before any parallel stage
+		original = getView(object);
+		subdivided.clear();
+		fragmentSources.clear();
+		isRasterized = false;
+		cullBackFaces();
 		
 		switch (camera.getRenderQuality())
 		{
 			// Fixed point pixel size, no distance-based sorting, no fill
 			case Low:
-				// Disables fill
-				Attributes	attr = group.getAttr();
-				attr.showFill = false;
-				group.setAttrToAll(attr);
-				
-				original = group.toList();
+				collectObjects();
 				calculateProjections();
 				break;
 			
-			// Zoom-proportional point pixel size, distance-based sorting
+			// Zoom-proportional point pixel size, distance-based (or BSP tree) sorting
 			case Med:
-				original = group.toList();
-				calculateDistances();
-				sortByDistance();
+				if (!listBSPOrder())
+				{
+					calculateDistances();
+					sortByDistance();
+				}
 				calculateProjections();
 				break;
 			
 			// Points as separate objects, polygon subdivision
 			case High:
-				original = group.toList();
-				subdivide();
-				calculateDistances();
-				sortByDistance();
+				if (!listBSPOrder())
+				{
+					subdivide();
+					calculateDistances();
+					sortByDistance();
+				}
 				calculateProjections();
 				break;
+			
+			// Meshes rasterized with a depth buffer instead of sorted
+			case ZBuffer:
+				rasterize();
+				break;
 		}
-		
-		return new Group(rendered);
 	}
 	
 	public void	paint(Graphics g)
 	// Draws rendered objects
 	{
-		for (GraphicObject obj : rendered)
+		if (isRasterized)
 		{
-			obj.paint(g);
+			g.drawImage(rasterizer.getImage(), 0, 0, null);
 		}
+		drawList.paint(g);
+	}
+	
+	public ForkJoinPool	getPool()
+	{
+		return pool;
+	}
+	
+	public void	setPool(ForkJoinPool pool)
+	// Sets the pool that large scenes are rendered with (null renders serially)
+	{
+		this.pool = pool;
+	}
+	
+	public int	getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+	
+	public void	setParallelThreshold(int threshold)
+	// Sets the number of objects (or mesh vertices) from which a stage is split across the pool
+	{
+		parallelThreshold = threshold;
+	}
+	
+	public int	getNumBackFaces()
+	// Returns the number of triangles skipped by back-face culling in the last render
+	{
+		return numBackFaces;
+	}
+	
+	public boolean	isScreenCulled()
+	{
+		return isScreenCulled;
+	}
+	
+	public void	setScreenCulled(boolean isScreenCulled)
+	// Sets whether mesh primitives outside the camera viewport are skipped (if the viewport size is set)
+	{
+		this.isScreenCulled = isScreenCulled;
+	}
+	
+	public double	getSubPixelSize()
+	{
+		return subPixelSize;
+	}
+	
+	public void	setSubPixelSize(double subPixelSize)
+	// Sets the screen size (in pixels) below which a mesh primitive is drawn as a single point (0 never)
+	{
+		this.subPixelSize = subPixelSize;
+	}
+	
+	public int	getNumOffScreen()
+	// Returns the number of mesh primitives skipped as off-screen in the last render
+	{
+		return numOffScreen;
+	}
+	
+	public int	getNumSubPixel()
+	// Returns the number of mesh primitives drawn as single points in the last render
+	{
+		return numSubPixel;
 	}
 	
 	
 	/* Internals
 	---------------------------------------------------------------------- */
 	private Camera	camera;
-	private java.util.List<GraphicObject>	original = null;
-	private java.util.List<SortObject>	sorted = new java.util.Vector<SortObject>();
-	private java.util.List<GraphicObject>	rendered = new java.util.Vector<GraphicObject>();
+	private Attributes	inheritedAttr;		// Attributes of the rendered object, for top-level objects without their own
+	private java.util.List<GraphicObject>	original = null;		// Read-only view of the source objects
+	private java.util.List<GraphicObject>	subdivided = new java.util.Vector<GraphicObject>();
+	private DrawList	drawList = new DrawList();		// Rendered primitives in drawing order, reused across frames
+	
+	// Objects (or mesh primitives) to render in scene order, reused across frames
+	private GraphicObject[]	listed = new GraphicObject[0];
+	private int[]	listedIndex = new int[0];		// Primitive index within a mesh, -1 for the whole object
+	private boolean[]	listedFill = new boolean[0];		// Overrides the object fill without modifying the object
+	private byte[]	listedCulling = new byte[0];		// VISIBLE, OFF_SCREEN or SUB_PIXEL (see cullToScreen)
+	private double[]	listedDistance = new double[0];
+	private int	numListed = 0;
+	private java.util.List<Mesh>	listedMeshes = new ArrayList<Mesh>();		// Meshes whose vertices are projected
+	
+	// Drawing order of the listed objects
+	private DepthSorter	sorter = new DepthSorter();
+	private int[]	order = new int[0];
+	private GraphicObject[]	sortedScene = new GraphicObject[0];		// Top-level objects of the previous sort
+	private int	sortedSceneSize = -1;
+	private Camera.RenderQuality	sortedQuality;
+	
+	// Parallel rendering
+	private ForkJoinPool	pool = ForkJoinPool.commonPool();
+	private int	parallelThreshold = 4096;
+	
+	// BSP trees of the rendered meshes, built one at a time in the background
+	private Map<Mesh, TreeBuild>	trees = new IdentityHashMap<Mesh, TreeBuild>();
+	private Map<Mesh, TreeBuild>	prevTrees = new IdentityHashMap<Mesh, TreeBuild>();
+	private Map<Mesh, Mesh>	fragmentSources = new IdentityHashMap<Mesh, Mesh>();		// Source mesh of each listed fragment mesh
+	private int[]	treeOrder = new int[0];
+	private Runnable	treeListener;		// Run on the builder thread whenever a tree is finished
+	private ExecutorService	treeBuilder = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		public Thread	newThread(Runnable r)
+		{
+			Thread	builder = new Thread(r, "BSP tree builder");
+			builder.setDaemon(true);
+			builder.setPriority(Thread.MIN_PRIORITY);
+			return builder;
+		}
+	});
+	
+	// Back-facing triangles of each mesh, reused across frames (back-face culling only)
+	private Map<Mesh, boolean[]>	backFaces = new IdentityHashMap<Mesh, boolean[]>();
+	private Map<Mesh, boolean[]>	prevBackFaces = new IdentityHashMap<Mesh, boolean[]>();
+	private int	numBackFaces = 0;
+	
+	// Screen culling of projected mesh primitives
+	private static final byte	VISIBLE = 0, OFF_SCREEN = 1, SUB_PIXEL = 2;
+	private boolean	isScreenCulled = true;
+	private double	subPixelSize = 1;
+	private int	numVisible = 0;
+	private int	numOffScreen = 0;
+	private int	numSubPixel = 0;
+	
+	// Wireframe meshes draw each unique edge once, claimed per frame (see claimEdges)
+	private int	numFrames = 0;
+	
+	// Rasterized meshes (ZBuffer quality)
+	private TileRasterizer	rasterizer = new TileRasterizer();
+	private boolean	isRasterized = false;
+	
+	// Per-mesh vertex projections, reused across frames
+	private Map<Mesh, VertexBuffer>	buffers = new IdentityHashMap<Mesh, VertexBuffer>();
+	private Map<Mesh, VertexBuffer>	prevBuffers = new IdentityHashMap<Mesh, VertexBuffer>();
+	
+	private static java.util.List<GraphicObject>	getView(GraphicObject object)
+	// Returns the top-level objects to render without copying them
+	{
+		if (object instanceof Group)
+		{
+			return ((Group) object).getView();
+		}
+		return Collections.singletonList(object);
+	}
+	
+	private void	collectObjects()
+	// Lists the objects to render in scene order
+	{
+		numListed = 0;
+		listedMeshes.clear();
+		boolean	isFilled = (camera.getRenderQuality() != Camera.RenderQuality.Low);
+		for (GraphicObject obj : original)
+		{
+			if (obj instanceof Mesh)
+			// Lists mesh primitives individually
+			{
+				Mesh	mesh = (Mesh) obj;
+				listedMeshes.add(mesh);
+				boolean[]	isBack = backFaces.get(mesh);
+				for (int i = 0; i < mesh.size(); i++)
+				{
+					if (isBack == null || !isBack[i])
+					{
+						list(mesh, i, isFilled && !isSubdivided(mesh));
+					}
+				}
+			}
+			else
+			{
+				list(obj, -1, isFilled && !isSubdivided(obj));
+			}
+		}
+		for (GraphicObject obj : subdivided)
+		{
+			list(obj, -1, true);
+		}
+		
+		resetOrder();
+	}
+	
+	private void	resetOrder()
+	// Draws in listed order unless sorted
+	{
+		if (order.length < numListed)
+		{
+			order = new int[listed.length];
+		}
+		for (int i = 0; i < numListed; i++)
+		{
+			order[i] = i;
+		}
+	}
+	
+	private void	list(GraphicObject obj, int index, boolean showFill)
+	{
+		if (numListed == listed.length)
+		{
+			int	length = Math.max(64, 2 * numListed);
+			listed = Arrays.copyOf(listed, length);
+			listedIndex = Arrays.copyOf(listedIndex, length);
+			listedFill = Arrays.copyOf(listedFill, length);
+			listedCulling = Arrays.copyOf(listedCulling, length);
+			listedDistance = Arrays.copyOf(listedDistance, length);
+		}
+		listed[numListed] = obj;
+		listedIndex[numListed] = index;
+		listedFill[numListed] = showFill;
+		numListed++;
+	}
 	
-	private class	SortObject
-	// Encapsulsates objects for distance-based sorting
+	private void	cullBackFaces()
+	// Marks the back-facing triangles of each mesh, which are then neither listed nor rasterized
 	{
-		public GraphicObject	object;
-		public double	distance;
+		Map<Mesh, boolean[]>	swap = prevBackFaces;
+		prevBackFaces = backFaces;
+		backFaces = swap;
+		backFaces.clear();
 		
-		public	SortObject(GraphicObject object)
+		numBackFaces = 0;
+		if (camera.isBackFaceCulled())
+		{
+			for (GraphicObject obj : original)
+			{
+				if (obj instanceof TriangleMesh)
+				{
+					markBackFaces((TriangleMesh) obj);
+				}
+			}
+		}
+		prevBackFaces.clear();
+	}
+	
+	private boolean[]	markBackFaces(final TriangleMesh mesh)
+	// Marks the triangles whose facet normal points away from the camera
+	// Both projectors draw along the view direction (perspective only scales towards the vanishing
+	// point), so the normal is compared with the view direction rather than with the camera location
+	{
+		boolean[]	isBack = prevBackFaces.remove(mesh);
+		if (isBack == null || isBack.length < mesh.size())
 		{
-			this.object = object;
-			distance = 0;
+			isBack = new boolean[mesh.size()];
 		}
 		
-		public	SortObject(GraphicObject object, double distance)
+		final boolean[]	isBackFace = isBack;
+		// Direction towards the camera (the unrotated depth axis)
+		ViewTransform	view = camera.getViewTransform();
+		final double	dx = view.m00, dy = view.m01, dz = view.m02;
+		ParallelLoop.run(pool, parallelThreshold, mesh.size(), new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				double[]	normal = new double[3];
+				for (int i = from; i < to; i++)
+				{
+					mesh.getNormal(i, normal);
+					isBackFace[i] = (normal[0] * dx + normal[1] * dy + normal[2] * dz < 0);
+				}
+			}
+		});
+		
+		for (int i = 0; i < mesh.size(); i++)
 		{
-			this.object = object;
-			this.distance = distance;
+			numBackFaces += (isBack[i] ? 1 : 0);
 		}
+		backFaces.put(mesh, isBack);
+		return isBack;
 	}
 	
 	private void	calculateDistances()
 	// Computes and stores camera-object distances
 	{
-		sorted.clear();
-		for (GraphicObject obj : original)
+		collectObjects();
+		
+		final Point3D	origin = camera.getCameraLocation();
+		ParallelLoop.run(pool, parallelThreshold, numListed, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				for (int i = from; i < to; i++)
+				{
+					if (listedIndex[i] < 0)
+					{
+						listedDistance[i] = getDistance(listed[i], origin);
+					}
+					else
+					{
+						listedDistance[i] = getDistance((Mesh) listed[i], listedIndex[i], origin);
+					}
+				}
+			}
+		});
+	}
+	
+	private static double	getDistance(GraphicObject obj, Point3D origin)
+	{
+		Point3D	center = (Point3D) obj.getCenter();
+		return center.getDistanceFrom(origin);
+	}
+	
+	private static double	getDepth(GraphicObject obj, ViewTransform view)
+	// Returns the depth of the object center along the view direction (larger is nearer)
+	{
+		Point3D	center = (Point3D) obj.getCenter();
+		return view.rotateX(center.getX(), center.getY(), center.getZ());
+	}
+	
+	private static double	getDistance(Mesh mesh, int primitive, Point3D origin)
+	// Returns the distance of the primitive center without allocating it (see Mesh.getCenter)
+	{
+		double	sumX = 0, sumY = 0, sumZ = 0;
+		int	n = mesh.getPrimitiveSize();
+		for (int corner = 0; corner < n; corner++)
 		{
-			Point3D	center = (Point3D) obj.getCenter();
-			Point3D	origin = camera.getCameraLocation();
-			double	distance = center.getDistanceFrom(origin);
-			sorted.add(new SortObject(obj, distance));
+			int	v = mesh.getVertexIndex(primitive, corner);
+			sumX += mesh.getX(v);
+			sumY += mesh.getY(v);
+			sumZ += mesh.getZ(v);
 		}
+		double	dx = sumX / n - origin.getX(), dy = sumY / n - origin.getY(), dz = sumZ / n - origin.getZ();
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
 	}
 	
 	private void	sortByDistance()
 	// Sorts objects in order of descending camera-object distance
+	// Between frames of the same scene (e.g. during a camera orbit), the previous order is repaired
+	{
+		sorter.sort(listedDistance, numListed, order, isSameScene());
+	}
+	
+	private boolean	isSameScene()
+	// Returns whether the same objects are rendered as in the previous sort
+	{
+		boolean	isSame = (original.size() == sortedSceneSize && camera.getRenderQuality() == sortedQuality);
+		if (sortedScene.length < original.size())
+		{
+			sortedScene = new GraphicObject[original.size()];
+		}
+		for (int i = 0; i < original.size(); i++)
+		{
+			GraphicObject	obj = original.get(i);
+			isSame = isSame && sortedScene[i] == obj;
+			sortedScene[i] = obj;
+		}
+		sortedSceneSize = original.size();
+		sortedQuality = camera.getRenderQuality();
+		return isSame;
+	}
+	
+	private boolean	listBSPOrder()
+	// Lists mesh triangles in back-to-front BSP tree order, meshes ordered by distance
+	// Returns false if BSP sorting is off or not every object is a mesh with a finished tree
+	{
+		// Keeps (or starts building) the trees of the current meshes only, if every object is a mesh
+		Map<Mesh, TreeBuild>	swap = prevTrees;
+		prevTrees = trees;
+		trees = swap;
+		trees.clear();
+		
+		boolean	isReady = camera.isBSPSorted();
+		for (GraphicObject obj : original)
+		{
+			isReady &= (obj instanceof TriangleMesh);
+		}
+		if (isReady)
+		{
+			for (GraphicObject obj : original)
+			{
+				TriangleMesh	mesh = (TriangleMesh) obj;
+				trees.put(mesh, prevTrees.remove(mesh));
+				isReady &= (getTree(mesh) != null);
+			}
+		}
+		for (TreeBuild build : prevTrees.values())
+		// Superseded builds that have not started yet are dropped
+		{
+			build.cancel(false);
+		}
+		prevTrees.clear();
+		if (!isReady)
+		{
+			return false;
+		}
+		
+		// Orders the meshes from back to front along the view direction (see markBackFaces)
+		final ViewTransform	view = camera.getViewTransform();
+		TriangleMesh[]	meshes = original.toArray(new TriangleMesh[0]);
+		Arrays.sort(meshes, new Comparator<TriangleMesh>()
+		{
+			public int	compare(TriangleMesh m1, TriangleMesh m2)
+			{
+				return Double.compare(getDepth(m1, view), getDepth(m2, view));
+			}
+		});
+		
+		// Lists the triangles of each tree from back to front
+		numListed = 0;
+		numBackFaces = 0;
+		listedMeshes.clear();
+		boolean	isSubdivided = (camera.getRenderQuality() == Camera.RenderQuality.High);
+		for (TriangleMesh mesh : meshes)
+		{
+			BSPTree	tree = getTree(mesh);
+			TriangleMesh	fragments = tree.getMesh();		// Owned by the tree, drawn with the attributes of the mesh
+			fragmentSources.put(fragments, mesh);
+			listedMeshes.add(fragments);
+			boolean[]	isBack = (camera.isBackFaceCulled() ? markBackFaces(fragments) : null);
+			
+			if (treeOrder.length < fragments.size())
+			{
+				treeOrder = new int[fragments.size()];
+			}
+			int	n = tree.traverse(view.m00, view.m01, view.m02, treeOrder);
+			for (int i = 0; i < n; i++)
+			{
+				if (isBack != null && isBack[treeOrder[i]])
+				{
+					continue;
+				}
+				list(fragments, treeOrder[i], !isSubdivided);
+				if (isSubdivided)
+				// Subdivided triangles directly follow their (unfilled) original
+				{
+					int	first = subdivided.size();
+					Group	triangle = fragments.getTriangle(treeOrder[i]);
+					triangle.setAttr(getAttr(fragments));
+					subdivide(triangle);
+					for (int j = first; j < subdivided.size(); j++)
+					{
+						list(subdivided.get(j), -1, true);
+					}
+				}
+			}
+		}
+		resetOrder();
+		return true;
+	}
+	
+	private BSPTree	getTree(final TriangleMesh mesh)
+	// Returns the finished tree of the mesh, queuing a background build if needed (null until finished)
+	// A failed build is not retried until the mesh is modified
+	{
+		TreeBuild	build = trees.get(mesh);
+		if (build == null || build.isDone() && build.modCount != mesh.getModCount())
+		// Builds the tree of a new (or modified) mesh
+		{
+			build = new TreeBuild(mesh);
+			trees.put(mesh, build);
+			treeBuilder.execute(build);
+			return null;
+		}
+		return build.getTree();
+	}
+	
+	private class	TreeBuild extends FutureTask<BSPTree>
+	// Background build of the tree of a mesh, as of the given modification
 	{
-		Collections.sort(sorted, new Comparator<SortObject>()
+		public final int	modCount;
+		
+		public	TreeBuild(final TriangleMesh mesh)
 		{
-			public int compare(SortObject o1, SortObject o2)
+			super(new Callable<BSPTree>()
 			{
-				if (o2.distance - o1.distance > 0)
+				public BSPTree	call()
 				{
-					return 1;
+					return new BSPTree(mesh);
 				}
-				else
-				if (o2.distance - o1.distance < 0)
+			});
+			modCount = mesh.getModCount();
+		}
+		
+		public BSPTree	getTree()
+		// Returns the finished tree, or null while unfinished or if the build failed
+		{
+			try
+			{
+				return (isDone() && !isCancelled() ? get() : null);
+			}
+			catch (Exception e)
+			{
+				return null;
+			}
+		}
+		
+		public boolean	hasFailed()
+		{
+			return isDone() && !isCancelled() && getTree() == null;
+		}
+		
+		protected void	done()
+		{
+			if (hasFailed())
+			{
+				try
 				{
-					return -1;
+					get();
 				}
-				else
+				catch (Exception e)
 				{
-					return 0;
+					System.err.println("Error! BSP tree build failed, drawing by distance: " + e.getCause());
 				}
 			}
-		} );
+			
+			Runnable	l = treeListener;
+			if (l != null && !isCancelled())
+			{
+				l.run();
+			}
+		}
+	}
+	
+	public BSPTree	getBSPTree(Mesh mesh)
+	// Returns the finished BSP tree of the given rendered mesh (for statistics), or null
+	{
+		TreeBuild	build = trees.get(mesh);
+		return (build != null ? build.getTree() : null);
+	}
+	
+	public int	getNumFailedBSPTrees()
+	// Returns the number of rendered meshes whose BSP tree build failed (retried once they are modified)
+	{
+		int	n = 0;
+		for (TreeBuild build : trees.values())
+		{
+			if (build != null && build.hasFailed())
+			{
+				n++;
+			}
+		}
+		return n;
+	}
+	
+	public java.util.List<BSPTree>	getBSPTrees()
+	// Returns the BSP trees of the last rendered meshes (for statistics), or null while any is unfinished
+	{
+		if (original == null)
+		{
+			return null;
+		}
+		
+		java.util.List<BSPTree>	list = new ArrayList<BSPTree>();
+		for (GraphicObject obj : original)
+		{
+			BSPTree	tree = (obj instanceof Mesh ? getBSPTree((Mesh) obj) : null);
+			if (tree == null)
+			{
+				return null;
+			}
+			list.add(tree);
+		}
+		return list;
+	}
+	
+	public void	setTreeListener(Runnable l)
+	// Sets the listener run (on the builder thread) whenever a BSP tree is finished, null for none
+	{
+		treeListener = l;
 	}
 	
 	private void	calculateProjections()
 	// Computes and stores the 2D screen object projections
 	{
-		rendered.clear();
+		projectVertices();
+		cullToScreen();
 		
-		switch (camera.getRenderQuality())
+		// Lays out the visible objects in drawing order, then renders them into their own slots
+		drawList.begin(numVisible, camera.getRenderQuality() != Camera.RenderQuality.Low);
+		int	numVertices = 0;
+		for (int i = 0; i < numVisible; i++)
 		{
-			case Low:
-				for (GraphicObject obj : original)
+			int	k = order[i];
+			drawList.first[i] = numVertices;
+			if (listedCulling[k] == SUB_PIXEL)
+			{
+				drawList.kind[i] = DrawList.POINT;
+				numVertices++;
+			}
+			else
+			if (listedIndex[k] >= 0)
+			{
+				drawList.kind[i] = DrawList.POLYGON;
+				numVertices += ((Mesh) listed[k]).getPrimitiveSize();
+			}
+			else
+			{
+				drawList.kind[i] = DrawList.OBJECT;
+			}
+		}
+		drawList.first[numVisible] = numVertices;
+		drawList.allocateVertices();
+		claimEdges();
+		
+		ParallelLoop.run(pool, parallelThreshold, numVisible, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				for (int i = from; i < to; i++)
 				{
-					rendered.add( obj.render(camera) );
+					int	k = order[i];
+					switch (drawList.kind[i])
+					{
+						case DrawList.POINT:
+							renderPoint(i, (Mesh) listed[k], listedIndex[k], listedFill[k]);
+							break;
+						
+						case DrawList.POLYGON:
+							render(i, (Mesh) listed[k], listedIndex[k], listedFill[k]);
+							break;
+						
+						case DrawList.OBJECT:
+							render(i, listed[k], listedFill[k]);
+							break;
+					}
 				}
-				break;
+			}
+		});
+		
+		// Releases references to the scene
+		Arrays.fill(listed, 0, numListed, null);
+	}
+	
+	private void	claimEdges()
+	// Has only the last drawn polygon along each unique edge of a wireframe mesh draw that edge, so that
+	// edges shared by primitives are drawn once rather than once per primitive (and still on top)
+	{
+		numFrames++;
+		for (int i = numVisible - 1; i >= 0; i--)
+		{
+			drawList.edgeMask[i] = DrawList.ALL_SIDES;
+			int	k = order[i];
+			if (drawList.kind[i] != DrawList.POLYGON || !isWireframe(k))
+			{
+				continue;
+			}
 			
-			case Med:
-			case High:
-				for (SortObject sobj : sorted)
+			Mesh	mesh = (Mesh) listed[k];
+			VertexBuffer	buffer = buffers.get(mesh);
+			if (buffer.edgeClaims.length < mesh.getNumEdges())
+			{
+				buffer.edgeClaims = new int[mesh.getNumEdges()];
+			}
+			
+			// One mask bit per side (meshes are made of segments or triangles)
+			int	sides = 0;
+			for (int side = 0; side < mesh.getPrimitiveSize(); side++)
+			{
+				int	edge = mesh.getSideEdge(listedIndex[k], side);
+				if (buffer.edgeClaims[edge] != numFrames)
 				{
-					rendered.add( sobj.object.render(camera) );
+					buffer.edgeClaims[edge] = numFrames;
+					sides |= 1 << side;
 				}
-				break;
+			}
+			drawList.edgeMask[i] = sides;
+		}
+	}
+	
+	private Attributes	getAttr(Mesh mesh)
+	// Returns the resolved attributes of a listed mesh (BSP fragments use those of their source mesh)
+	{
+		Mesh	source = fragmentSources.get(mesh);
+		return (source != null ? source : mesh).getAttr(inheritedAttr);
+	}
+	
+	private boolean	isWireframe(int k)
+	// Returns whether the listed mesh primitive shows its edges without its fill
+	{
+		Attributes	attr = getAttr((Mesh) listed[k]);
+		return attr.showEdges && !(attr.showFill && listedFill[k]);
+	}
+	
+	private void	cullToScreen()
+	// Classifies the projected mesh primitives by their screen bounds, then removes the off-screen
+	// ones from the drawing order; primitives smaller than the sub-pixel size are drawn as points
+	{
+		numOffScreen = 0;
+		numSubPixel = 0;
+		
+		// Pads the viewport by the largest point disc of each mesh
+		for (Mesh mesh : listedMeshes)
+		{
+			VertexBuffer	buffer = buffers.get(mesh);
+			Attributes	attr = getAttr(mesh);
+			double	scaling = 0;
+			for (int v = 0; v < buffer.size; v++)
+			{
+				scaling = Math.max(scaling, buffer.scaling[v]);
+			}
+			buffer.pointRadius = (attr.showPoints ? camera.getProjector().getPixelRadius(attr, scaling, camera) : 0);
+		}
+		Dimension	size = camera.getViewportSize();
+		final boolean	isCulled = (isScreenCulled && size.width > 0 && size.height > 0);
+		final int	width = size.width, height = size.height;
+		
+		ParallelLoop.run(pool, parallelThreshold, numListed, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				for (int k = from; k < to; k++)
+				{
+					listedCulling[k] = VISIBLE;
+					if (listedIndex[k] < 0)
+					// Whole objects are always drawn
+					{
+						continue;
+					}
+					
+					Mesh	mesh = (Mesh) listed[k];
+					VertexBuffer	buffer = buffers.get(mesh);
+					double	minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+					double	minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+					for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+					{
+						int	v = mesh.getVertexIndex(listedIndex[k], corner);
+						minX = Math.min(minX, buffer.screenX[v]);
+						maxX = Math.max(maxX, buffer.screenX[v]);
+						minY = Math.min(minY, buffer.screenY[v]);
+						maxY = Math.max(maxY, buffer.screenY[v]);
+					}
+					
+					int	margin = buffer.pointRadius + 1;
+					if (isCulled && (maxX < -margin || minX > width + margin || maxY < -margin || minY > height + margin))
+					{
+						listedCulling[k] = OFF_SCREEN;
+					}
+					else
+					if (maxX - minX < subPixelSize && maxY - minY < subPixelSize && buffer.pointRadius == 0)
+					{
+						listedCulling[k] = SUB_PIXEL;
+					}
+				}
+			}
+		});
+		
+		// Keeps the drawing order of the remaining objects
+		numVisible = 0;
+		for (int i = 0; i < numListed; i++)
+		{
+			int	k = order[i];
+			switch (listedCulling[k])
+			{
+				case OFF_SCREEN:
+					numOffScreen++;
+					continue;
+				
+				case SUB_PIXEL:
+					numSubPixel++;
+					break;
+			}
+			order[numVisible++] = k;
+		}
+	}
+	
+	private void	renderPoint(int item, Mesh mesh, int primitive, boolean showFill)
+	// Renders a sub-pixel mesh primitive as a single point at its center (see DrawList.POINT)
+	{
+		VertexBuffer	buffer = buffers.get(mesh);
+		double	x = 0, y = 0;
+		for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+		{
+			int	v = mesh.getVertexIndex(primitive, corner);
+			x += buffer.screenX[v];
+			y += buffer.screenY[v];
+		}
+		int	first = drawList.first[item];
+		drawList.screenX[first] = x / mesh.getPrimitiveSize();
+		drawList.screenY[first] = y / mesh.getPrimitiveSize();
+		drawList.attr[item] = getAttr(mesh);
+		drawList.showFill[item] = showFill;
+	}
+	
+	private void	render(int item, Mesh mesh, int primitive, boolean showFill)
+	// Renders a mesh primitive from the projected mesh vertices (see DrawList.POLYGON)
+	{
+		VertexBuffer	buffer = buffers.get(mesh);
+		Attributes	attr = getAttr(mesh);
+		int	first = drawList.first[item];
+		for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+		{
+			int	v = mesh.getVertexIndex(primitive, corner);
+			drawList.screenX[first + corner] = buffer.screenX[v];
+			drawList.screenY[first + corner] = buffer.screenY[v];
+			drawList.pixelRadius[first + corner] = (attr.showPoints ? camera.getProjector().getPixelRadius(attr, buffer.scaling[v], camera) : 0);
+		}
+		drawList.attr[item] = attr;
+		drawList.showFill[item] = showFill;
+	}
+	
+	private void	render(int item, GraphicObject obj, boolean showFill)
+	// Renders a whole object, disabling the fill of the rendered copy if requested (see DrawList.OBJECT)
+	{
+		GraphicObject	r = obj.render(camera, inheritedAttr);
+		if (!showFill)
+		{
+			Attributes	attr = r.getAttr();
+			r.setAttr(attr.withFill(attr.fillRGB, attr.fillOpacity, false));
 		}
+		drawList.objects[item] = r;
+	}
+	
+	private void	projectVertices()
+	// Projects the vertices of each mesh once for all of its primitives
+	{
+		Map<Mesh, VertexBuffer>	swap = prevBuffers;
+		prevBuffers = buffers;
+		buffers = swap;
+		buffers.clear();
+		
+		for (Mesh mesh : listedMeshes)
+		{
+			VertexBuffer	buffer = prevBuffers.remove(mesh);
+			if (buffer == null)
+			{
+				buffer = new VertexBuffer();
+			}
+			buffer.project(mesh, camera, pool, parallelThreshold);
+			buffers.put(mesh, buffer);
+		}
+		prevBuffers.clear();
+	}
+	
+	private void	rasterize()
+	// Rasterizes meshes into the depth-buffered image in scene order (other objects are drawn over it)
+	{
+		numListed = 0;
+		listedMeshes.clear();
+		for (GraphicObject obj : original)
+		{
+			if (obj instanceof Mesh)
+			{
+				listedMeshes.add((Mesh) obj);
+			}
+			else
+			{
+				list(obj, -1, true);
+			}
+		}
+		resetOrder();
+		calculateProjections();
+		
+		// Bins the primitives of each mesh into screen tiles, then draws the tiles in parallel
+		Dimension	size = camera.getViewportSize();
+		rasterizer.begin(size.width, size.height, 1e-3 * camera.getExtentsMaxRange());
+		rasterizer.setSubPixelSize(subPixelSize);
+		for (Mesh mesh : listedMeshes)
+		{
+			VertexBuffer	buffer = buffers.get(mesh);
+			buffer.projectDepth(mesh, camera, pool, parallelThreshold);
+			rasterizer.add(mesh, getAttr(mesh), buffer, camera, backFaces.get(mesh));
+		}
+		rasterizer.rasterize(pool);
+		numOffScreen += rasterizer.getNumOffScreen();
+		numSubPixel += rasterizer.getNumSubPixel();
+		isRasterized = true;
 	}
 	
 	private void	subdivide()
-	// Subdivides original polygons
+	// Subdivides original polygons (originals are drawn unfilled, see isSubdivided)
 	{
-		java.util.List<GraphicObject>	subdivided = new java.util.Vector<GraphicObject>();
 		for (GraphicObject obj : original)
 		{
-			if (obj instanceof Group)
+			if (obj instanceof TriangleMesh)
 			{
-				Group	group = (Group) obj;
-				switch (group.size())
+				TriangleMesh	mesh = (TriangleMesh) obj;
+				boolean[]	isBack = backFaces.get(mesh);
+				for (int i = 0; i < mesh.size(); i++)
 				{
-					// Triangle
-					case 3:
-						Point3D	v0 = new Point3D( group.get(0) );
-						Point3D	v1 = new Point3D( group.get(1) );
-						Point3D	v2 = new Point3D( group.get(2) );
-						
-						// Calculates midpoints
-						Point3D	mid01 = new Point3D();
-						Point3D	mid12 = new Point3D();
-						Point3D	mid20 = new Point3D();
-						mid01.set( v0 .getSum( (Point)
-						           ((Point) group.get(1)) .getDifference( (Point) group.get(0) ) .getProduct( 0.5 ) ));
-						mid12.set( v1 .getSum( (Point)
-						           ((Point) group.get(2)) .getDifference( (Point) group.get(1) ) .getProduct( 0.5 ) ));
-						mid20.set( v2 .getSum( (Point)
-						           ((Point) group.get(0)) .getDifference( (Point) group.get(2) ) .getProduct( 0.5 ) ));
-						
-						// Creates subdivided triangles
-						Attributes	attr = group.getAttr();
-						//attr.showEdges = false;
-						attr.edgeOpacity = 0.25;
-						attr.showPoints = false;
-						Group	tri0 = new Group(attr, v0, mid01, mid20);
-						Group	tri1 = new Group(attr, v1, mid01, mid12);
-						Group	tri2 = new Group(attr, v2, mid12, mid20);
-						Group	tri3 = new Group(attr, mid01, mid12, mid20);
-						
-						subdivided.add(tri0);
-						subdivided.add(tri1);
-						subdivided.add(tri2);
-						subdivided.add(tri3);
-						
-						attr = group.getAttr();
-						attr.showFill = false;
-						group.setAttr(attr);
-						break;
+					if (isBack == null || !isBack[i])
+					{
+						subdivide(mesh.getTriangle(i));
+					}
 				}
 			}
+			else
+			if (isSubdivided(obj))
+			{
+				subdivide((Group) obj);
+			}
 		}
-		//original.clear();
-		original.addAll(subdivided);
+	}
+	
+	private void	subdivide(Group group)
+	// Subdivides a single polygon
+	{
+		switch (group.size())
+		{
+			// Triangle
+			case 3:
+				Point3D	v0 = new Point3D( group.get(0) );
+				Point3D	v1 = new Point3D( group.get(1) );
+				Point3D	v2 = new Point3D( group.get(2) );
+				
+				// Calculates midpoints
+				Point3D	mid01 = new Point3D();
+				Point3D	mid12 = new Point3D();
+				Point3D	mid20 = new Point3D();
+				mid01.set( v0 .getSum( (Point)
+				           ((Point) group.get(1)) .getDifference( (Point) group.get(0) ) .getProduct( 0.5 ) ));
+				mid12.set( v1 .getSum( (Point)
+				           ((Point) group.get(2)) .getDifference( (Point) group.get(1) ) .getProduct( 0.5 ) ));
+				mid20.set( v2 .getSum( (Point)
+				           ((Point) group.get(0)) .getDifference( (Point) group.get(2) ) .getProduct( 0.5 ) ));
+				
+				// Creates subdivided triangles
+				Attributes	attr = group.getAttr(inheritedAttr);
+				attr = attr.withEdges(attr.edgeRGB, 0.25, attr.showEdges);
+				attr = attr.withPoints(attr.pointRGB, attr.pointOpacity, false);
+				Group	tri0 = new Group(attr, v0, mid01, mid20);
+				Group	tri1 = new Group(attr, v1, mid01, mid12);
+				Group	tri2 = new Group(attr, v2, mid12, mid20);
+				Group	tri3 = new Group(attr, mid01, mid12, mid20);
+				
+				subdivided.add(tri0);
+				subdivided.add(tri1);
+				subdivided.add(tri2);
+				subdivided.add(tri3);
+				break;
+		}
+	}
+	
+	private boolean	isSubdivided(GraphicObject obj)
+	// Returns whether the object is replaced by subdivided polygons
+	{
+		return camera.getRenderQuality() == Camera.RenderQuality.High && 
+		       ( obj instanceof TriangleMesh || 
+		         obj instanceof Group && ((Group) obj).size() == 3 );
 	}
 }
\ No newline at end of file
@@ -0,0 +1,316 @@
+/* ------------------------------------------------------------
+   About:      Tile rasterizer class
+               Bins projected mesh primitives into screen tiles and rasterizes the tiles in parallel.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java3D.storage.*;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.*;
+
+class	TileRasterizer
+{
+	private ZBuffer	zbuffer = new ZBuffer();
+	private int	tileSize = 64;		// In pixels
+	
+	// Screen tiles, each with the primitives (in drawing order) that may cover it
+	private int	width = 0, height = 0;
+	private int	columns = 0, rows = 0;
+	private Rectangle[]	tiles = new Rectangle[0];
+	private int[][]	bins = new int[0][];
+	private int[]	binSizes = new int[0];
+	
+	// Meshes to draw, reused across frames
+	private java.util.List<Layer>	layers = new ArrayList<Layer>();
+	private int	numLayers = 0;
+	private int	numItems = 0;
+	private double	subPixelSize = 1;		// Primitives smaller than this (in pixels) are drawn as single points
+	private int	numOffScreen = 0, numSubPixel = 0;
+	private boolean	isTranslucent = false;		// Whether any added color is translucent
+	
+	private static class	Layer
+	// A mesh whose primitives, then vertices (as points), are numbered from first (inclusive) to end (exclusive)
+	{
+		public Mesh	mesh;
+		public VertexBuffer	buffer;
+		public int	fill, edge, point;		// Premultiplied ARGB, 0 if not drawn
+		public int[]	pixelRadius = new int[0];
+		public boolean[]	isSubPixel = new boolean[0];
+		public int	first, numPrimitives, end;
+	}
+	
+	
+	/* Public
+	---------------------------------------------------------------------- */
+	public BufferedImage	getImage()
+	{
+		return zbuffer.getImage();
+	}
+	
+	public void	setSubPixelSize(double subPixelSize)
+	{
+		this.subPixelSize = subPixelSize;
+	}
+	
+	public int	getNumOffScreen()
+	// Returns the number of primitives outside the image in this frame
+	{
+		return numOffScreen;
+	}
+	
+	public int	getNumSubPixel()
+	// Returns the number of primitives drawn as single points in this frame
+	{
+		return numSubPixel;
+	}
+	
+	public void	begin(int width, int height, double depthBias)
+	// Starts a new frame of the given size (drawn by rasterize)
+	{
+		zbuffer.resize(width, height);
+		zbuffer.setDepthBias(depthBias);
+		
+		// Splits the image into tiles
+		if (zbuffer.getWidth() != this.width || zbuffer.getHeight() != this.height)
+		{
+			this.width = zbuffer.getWidth();
+			this.height = zbuffer.getHeight();
+			columns = (width + tileSize - 1) / tileSize;
+			rows = (height + tileSize - 1) / tileSize;
+			tiles = new Rectangle[columns * rows];
+			bins = new int[columns * rows][16];
+			binSizes = new int[columns * rows];
+			for (int t = 0; t < tiles.length; t++)
+			{
+				int	x = (t % columns) * tileSize, y = (t / columns) * tileSize;
+				tiles[t] = new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+			}
+		}
+		Arrays.fill(binSizes, 0);
+		
+		for (int l = 0; l < numLayers; l++)
+		// Releases references to the previous scene
+		{
+			layers.get(l).mesh = null;
+			layers.get(l).buffer = null;
+		}
+		numLayers = 0;
+		numItems = 0;
+		numOffScreen = 0;
+		numSubPixel = 0;
+		isTranslucent = false;
+	}
+	
+	public void	add(Mesh mesh, Attributes attr, VertexBuffer buffer, Camera camera, boolean[] isCulled)
+	// Bins the primitives and vertices of a projected mesh (with vertex depths and resolved attributes) after those already added
+	// Primitives marked as culled are skipped (null culls none), as are those outside the image
+	{
+		if (numLayers == layers.size())
+		{
+			layers.add(new Layer());
+		}
+		Layer	layer = layers.get(numLayers++);
+		layer.mesh = mesh;
+		layer.buffer = buffer;
+		layer.fill = (attr.showFill && mesh.getPrimitiveSize() == 3 ? ZBuffer.getPremultiplied(attr.fillARGB) : 0);
+		layer.edge = (attr.showEdges ? ZBuffer.getPremultiplied(attr.edgeARGB) : 0);
+		layer.point = (attr.showPoints ? ZBuffer.getPremultiplied(attr.pointARGB) : 0);
+		isTranslucent |= (layer.fill != 0 && !ZBuffer.isOpaque(layer.fill) || 
+		                  layer.edge != 0 && !ZBuffer.isOpaque(layer.edge) || 
+		                  layer.point != 0 && !ZBuffer.isOpaque(layer.point));
+		layer.first = numItems;
+		layer.numPrimitives = mesh.size();
+		layer.end = numItems + mesh.size() + buffer.size;
+		
+		// Bins each primitive by its bounding box (widened for lines)
+		double[]	x = buffer.screenX, y = buffer.screenY;
+		if (layer.fill != 0 || layer.edge != 0)
+		{
+			if (layer.isSubPixel.length < mesh.size())
+			{
+				layer.isSubPixel = new boolean[mesh.size()];
+			}
+			for (int i = 0; i < mesh.size(); i++)
+			{
+				if (isCulled != null && isCulled[i])
+				{
+					continue;
+				}
+				double	minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+				double	minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+				for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+				{
+					int	v = mesh.getVertexIndex(i, corner);
+					minX = Math.min(minX, x[v]);
+					maxX = Math.max(maxX, x[v]);
+					minY = Math.min(minY, y[v]);
+					maxY = Math.max(maxY, y[v]);
+				}
+				
+				layer.isSubPixel[i] = (maxX - minX < subPixelSize && maxY - minY < subPixelSize);
+				if (maxX < -1 || minX > width + 1 || maxY < -1 || minY > height + 1)
+				{
+					numOffScreen++;
+				}
+				else
+				if (layer.isSubPixel[i])
+				// Binned as the 2x2 point drawn at its center
+				{
+					numSubPixel++;
+					double	cx = (minX + maxX) / 2, cy = (minY + maxY) / 2;
+					bin(layer.first + i, cx - 1, cy - 1, cx + 2, cy + 2);
+				}
+				else
+				{
+					bin(layer.first + i, minX - 1, minY - 1, maxX + 1, maxY + 1);
+				}
+			}
+		}
+		
+		// Bins each vertex point by its disc
+		if (layer.point != 0)
+		{
+			if (layer.pixelRadius.length < buffer.size)
+			{
+				layer.pixelRadius = new int[buffer.size];
+			}
+			for (int v = 0; v < buffer.size; v++)
+			{
+				int	r = camera.getProjector().getPixelRadius(attr, buffer.scaling[v], camera);
+				layer.pixelRadius[v] = r;
+				bin(layer.end - buffer.size + v, x[v] - r - 1, y[v] - r - 1, x[v] + r + 2, y[v] + r + 2);
+			}
+		}
+		numItems = layer.end;
+	}
+	
+	public void	rasterize(ForkJoinPool pool)
+	// Clears and draws every tile, concurrently if a pool is given (tiles never share pixels)
+	{
+		ParallelLoop.run(pool, 2, tiles.length, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				for (int t = from; t < to; t++)
+				{
+					rasterize(t);
+				}
+			}
+		});
+	}
+	
+	
+	/* Internals
+	---------------------------------------------------------------------- */
+	private void	bin(int item, double minX, double minY, double maxX, double maxY)
+	// Appends the item to the bin of each tile overlapping the box
+	{
+		if (!(minX <= maxX && minY <= maxY))
+		// Invalid (NaN) coordinates
+		{
+			return;
+		}
+		int	c0 = (int) Math.max(0, Math.floor(minX / tileSize));
+		int	c1 = (int) Math.min(columns - 1, Math.floor(maxX / tileSize));
+		int	r0 = (int) Math.max(0, Math.floor(minY / tileSize));
+		int	r1 = (int) Math.min(rows - 1, Math.floor(maxY / tileSize));
+		for (int r = r0; r <= r1; r++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				int	t = r * columns + c;
+				if (binSizes[t] == bins[t].length)
+				{
+					bins[t] = Arrays.copyOf(bins[t], 2 * binSizes[t]);
+				}
+				bins[t][binSizes[t]++] = item;
+			}
+		}
+	}
+	
+	private void	rasterize(int t)
+	// Draws the binned items of a tile, clipped to the tile
+	// Opaque colors are drawn first, then translucent colors over them (depth tested, but not written), 
+	// so that a translucent surface never hides an opaque one drawn after it
+	{
+		zbuffer.clear(tiles[t]);
+		rasterize(t, false);
+		if (isTranslucent)
+		{
+			rasterize(t, true);
+		}
+	}
+	
+	private void	rasterize(int t, boolean isTranslucentPass)
+	// Draws the binned items of a tile in order, in their opaque (or translucent) colors only
+	{
+		Rectangle	clip = tiles[t];
+		int[]	bin = bins[t];
+		int	l = 0;
+		for (int k = 0; k < binSizes[t]; k++)
+		{
+			int	item = bin[k];
+			while (item >= layers.get(l).end)
+			{
+				l++;
+			}
+			Layer	layer = layers.get(l);
+			int	fill = getPassColor(layer.fill, isTranslucentPass);
+			int	edge = getPassColor(layer.edge, isTranslucentPass);
+			int	point = getPassColor(layer.point, isTranslucentPass);
+			double[]	x = layer.buffer.screenX, y = layer.buffer.screenY, z = layer.buffer.depth;
+			int	i = item - layer.first;
+			if (i < layer.numPrimitives)
+			// Primitive fill and edges
+			{
+				Mesh	mesh = layer.mesh;
+				int	v0 = mesh.getVertexIndex(i, 0);
+				int	v1 = mesh.getVertexIndex(i, 1);
+				if (layer.isSubPixel[i])
+				// Single point in the edge color (or the fill color if edges are hidden)
+				{
+					double	px = 0, py = 0, pz = Double.NEGATIVE_INFINITY;
+					for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+					{
+						int	v = mesh.getVertexIndex(i, corner);
+						px += x[v];
+						py += y[v];
+						pz = Math.max(pz, z[v]);
+					}
+					int	n = mesh.getPrimitiveSize();
+					zbuffer.fillPoint(px / n, py / n, pz, 0, (layer.edge != 0 ? edge : fill), clip);
+				}
+				else
+				{
+					if (mesh.getPrimitiveSize() == 3)
+					{
+						int	v2 = mesh.getVertexIndex(i, 2);
+						zbuffer.fillTriangle(x[v0], y[v0], z[v0], x[v1], y[v1], z[v1], x[v2], y[v2], z[v2], fill, clip);
+						zbuffer.drawLine(x[v1], y[v1], z[v1], x[v2], y[v2], z[v2], edge, clip);
+						zbuffer.drawLine(x[v2], y[v2], z[v2], x[v0], y[v0], z[v0], edge, clip);
+					}
+					zbuffer.drawLine(x[v0], y[v0], z[v0], x[v1], y[v1], z[v1], edge, clip);
+				}
+			}
+			else
+			// Vertex point
+			{
+				int	v = i - layer.numPrimitives;
+				zbuffer.fillPoint(x[v], y[v], z[v], layer.pixelRadius[v], point, clip);
+			}
+		}
+	}
+	
+	private static int	getPassColor(int argb, boolean isTranslucentPass)
+	// Returns the color if it is drawn in the given pass, 0 otherwise
+	{
+		return (argb != 0 && ZBuffer.isOpaque(argb) != isTranslucentPass ? argb : 0);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+/* ------------------------------------------------------------
+   About:      Vector projector class
+               Batch projection using SIMD instructions (Vector API).
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java3D.storage.*;
+import jdk.incubator.vector.*;
+
+class	VectorProjector
+// Only loaded when the jdk.incubator.vector module is present (see Projector.isVectorized)
+// Performs the same operations in the same order as the scalar projectors, so results are identical
+{
+	private static final VectorSpecies<Double>	SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	
+	/* Projection
+	---------------------------------------------------------------------- */
+	public static void	projectIsometric(double[] x, double[] y, double[] z, int from, int to, ViewTransform view, 
+	                                     double[] screenX, double[] screenY, double[] scaling)
+	{
+		int	i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+		{
+			DoubleVector	vx = DoubleVector.fromArray(SPECIES, x, i);
+			DoubleVector	vy = DoubleVector.fromArray(SPECIES, y, i);
+			DoubleVector	vz = DoubleVector.fromArray(SPECIES, z, i);
+			toScreenX(view, rotateY(view, vx, vy, vz)).intoArray(screenX, i);
+			toScreenY(view, rotateZ(view, vx, vy, vz)).intoArray(screenY, i);
+			DoubleVector.broadcast(SPECIES, 1).intoArray(scaling, i);
+		}
+		
+		// Remaining coordinates
+		for (; i < to; i++)
+		{
+			screenX[i] = view.toScreenX(view.rotateY(x[i], y[i], z[i]));
+			screenY[i] = view.toScreenY(view.rotateZ(x[i], y[i], z[i]));
+			scaling[i] = 1;
+		}
+	}
+	
+	public static void	projectPerspective(double[] x, double[] y, double[] z, int from, int to, ViewTransform view, 
+	                                       double[] screenX, double[] screenY, double[] scaling)
+	{
+		// Eye distances, then the scaling factors from them in a scalar pass: the vector POW is not 
+		// intrinsified on every platform, and its fallback allocates per lane
+		int	i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+		{
+			DoubleVector	dx = DoubleVector.fromArray(SPECIES, x, i).sub(view.eyeX);
+			DoubleVector	dy = DoubleVector.fromArray(SPECIES, y, i).sub(view.eyeY);
+			DoubleVector	dz = DoubleVector.fromArray(SPECIES, z, i).sub(view.eyeZ);
+			dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt().intoArray(scaling, i);
+		}
+		for (int j = from; j < to; j++)
+		{
+			scaling[j] = (j < i ? view.getScaling(scaling[j]) : view.getScaling(x[j], y[j], z[j]));
+		}
+		
+		i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length())
+		{
+			DoubleVector	vx = DoubleVector.fromArray(SPECIES, x, i);
+			DoubleVector	vy = DoubleVector.fromArray(SPECIES, y, i);
+			DoubleVector	vz = DoubleVector.fromArray(SPECIES, z, i);
+			DoubleVector	s = DoubleVector.fromArray(SPECIES, scaling, i);
+			
+			// Screen coordinates, shifted towards the vanishing point
+			toScreenX(view, rotateY(view, vx, vy, vz).sub(view.vanishX).mul(s).add(view.vanishX)).intoArray(screenX, i);
+			toScreenY(view, rotateZ(view, vx, vy, vz).sub(view.vanishY).mul(s).add(view.vanishY)).intoArray(screenY, i);
+		}
+		
+		// Remaining coordinates
+		for (; i < to; i++)
+		{
+			screenX[i] = view.toScreenX(view.vanishX + (view.rotateY(x[i], y[i], z[i]) - view.vanishX) * scaling[i]);
+			screenY[i] = view.toScreenY(view.vanishY + (view.rotateZ(x[i], y[i], z[i]) - view.vanishY) * scaling[i]);
+		}
+	}
+	
+	
+	/* Helpers
+	---------------------------------------------------------------------- */
+	private static DoubleVector	rotateY(ViewTransform view, DoubleVector x, DoubleVector y, DoubleVector z)
+	{
+		return x.mul(view.m10).add(y.mul(view.m11)).add(z.mul(view.m12)).add(view.m13);
+	}
+	
+	private static DoubleVector	rotateZ(ViewTransform view, DoubleVector x, DoubleVector y, DoubleVector z)
+	{
+		return x.mul(view.m20).add(y.mul(view.m21)).add(z.mul(view.m22)).add(view.m23);
+	}
+	
+	private static DoubleVector	toScreenX(ViewTransform view, DoubleVector x)
+	{
+		return x.mul(view.zoom).add(view.screenX);
+	}
+	
+	private static DoubleVector	toScreenY(ViewTransform view, DoubleVector y)
+	{
+		return DoubleVector.broadcast(SPECIES, view.screenY).sub(y.mul(view.zoom));
+	}
+}
\ No newline at end of file
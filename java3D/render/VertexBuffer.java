@@ -0,0 +1,70 @@
+/* ------------------------------------------------------------
+   About:      Vertex buffer class
+               Stores the per-frame screen projections of mesh vertices.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java3D.storage.*;
+import java.util.concurrent.*;
+
+class	VertexBuffer
+{
+	public double[]	screenX = new double[0], screenY = new double[0];		// Screen coordinates
+	public double[]	scaling = new double[0];		// Point scaling factors
+	public double[]	depth = new double[0];		// Rotated depth, larger is nearer (see projectDepth)
+	public int	pointRadius = 0;		// Largest point pixel radius, 0 if points are hidden (set by screen culling)
+	public int[]	edgeClaims = new int[0];		// Frame in which each unique mesh edge was last claimed (see Renderer.claimEdges)
+	public int	size = 0;
+	
+	
+	/* Projection
+	---------------------------------------------------------------------- */
+	public void	project(final Mesh mesh, final Camera camera, ForkJoinPool pool, int threshold)
+	// Projects each mesh vertex exactly once, reusing the buffer storage
+	// Vertex ranges are projected in parallel if the mesh reaches the threshold
+	{
+		size = mesh.getNumVertices();
+		if (size > screenX.length)
+		{
+			screenX = new double[size];
+			screenY = new double[size];
+			scaling = new double[size];
+		}
+		
+		ParallelLoop.run(pool, threshold, size, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				camera.getProjector().project3DtoScreen(mesh.getXCoordinates(), mesh.getYCoordinates(), mesh.getZCoordinates(), 
+				                                        from, to, camera, screenX, screenY, scaling);
+			}
+		});
+	}
+	
+	public void	projectDepth(final Mesh mesh, final Camera camera, ForkJoinPool pool, int threshold)
+	// Stores the depth of each projected vertex towards the camera (used by rasterizing qualities only)
+	{
+		if (size > depth.length)
+		{
+			depth = new double[size];
+		}
+		
+		final ViewTransform	view = camera.getViewTransform();
+		final double[]	x = mesh.getXCoordinates(), y = mesh.getYCoordinates(), z = mesh.getZCoordinates();
+		ParallelLoop.run(pool, threshold, size, new ParallelLoop.Body()
+		{
+			public void	run(int from, int to)
+			{
+				for (int i = from; i < to; i++)
+				{
+					depth[i] = view.rotateX(x[i], y[i], z[i]);
+				}
+			}
+		});
+	}
+}
\ No newline at end of file
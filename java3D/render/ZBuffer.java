@@ -0,0 +1,345 @@
+/* ------------------------------------------------------------
+   About:      Z-buffer class
+               Rasterizes triangles, lines and points into an ARGB image with a depth buffer.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.render;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.*;
+
+class	ZBuffer
+{
+	private int	width = 0, height = 0;
+	private BufferedImage	image;
+	private int[]	pixels = new int[0];		// Premultiplied ARGB, shared with the image
+	private float[]	depth = new float[0];		// Larger is nearer the camera
+	private float	depthBias = 0;		// Lifts lines and points above the surfaces they lie on
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public int	getWidth()
+	{
+		return width;
+	}
+	
+	public int	getHeight()
+	{
+		return height;
+	}
+	
+	public BufferedImage	getImage()
+	// Returns the rasterized image (transparent where nothing was drawn)
+	{
+		return image;
+	}
+	
+	public void	resize(int width, int height)
+	// Reallocates the buffers only if the size has changed
+	{
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		if (width != this.width || height != this.height)
+		{
+			this.width = width;
+			this.height = height;
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			depth = new float[width * height];
+		}
+	}
+	
+	public void	setDepthBias(double depthBias)
+	{
+		this.depthBias = (float) depthBias;
+	}
+	
+	public void	clear(Rectangle clip)
+	// Clears the image to transparent and the depth buffer to infinitely far within the clip
+	{
+		for (int y = clip.y; y < clip.y + clip.height; y++)
+		{
+			int	i = y * width + clip.x;
+			java.util.Arrays.fill(pixels, i, i + clip.width, 0);
+			java.util.Arrays.fill(depth, i, i + clip.width, Float.NEGATIVE_INFINITY);
+		}
+	}
+	
+	public static int	getPremultiplied(Color color)
+	// Returns the premultiplied ARGB value of the (possibly translucent) color
+	{
+		return getPremultiplied(color.getRGB());
+	}
+	
+	public static int	getPremultiplied(int argb)
+	// Returns the premultiplied ARGB value of the packed (non-premultiplied) ARGB value
+	{
+		int	a = argb >>> 24;
+		return (a << 24) | (multiply((argb >> 16) & 0xFF, a) << 16) | 
+		                   (multiply((argb >> 8) & 0xFF, a) << 8) | 
+		                    multiply(argb & 0xFF, a);
+	}
+	
+	public static boolean	isOpaque(int argb)
+	{
+		return (argb >>> 24) == 255;
+	}
+	
+	
+	/* Rasterization
+	   Only pixels inside the clip rectangle are drawn, so disjoint clips can be drawn concurrently
+	---------------------------------------------------------------------- */
+	public void	fillTriangle(double x0, double y0, double z0, 
+	                         double x1, double y1, double z1, 
+	                         double x2, double y2, double z2, int argb, Rectangle clip)
+	// Fills the pixels whose centers lie inside the triangle (shared edges are filled once)
+	{
+		double	area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+		if (area == 0 || Double.isNaN(area) || argb == 0)
+		// Degenerate (or invalid) triangle
+		{
+			return;
+		}
+		if (area < 0)
+		// Orders the vertices so that the edge functions are positive inside
+		{
+			double	x = x1, y = y1, z = z1;
+			x1 = x2;  y1 = y2;  z1 = z2;
+			x2 = x;   y2 = y;   z2 = z;
+			area = -area;
+		}
+		
+		// Clips the bounding box
+		int	minX = Math.max(clip.x, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+		int	maxX = Math.min(clip.x + clip.width - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+		int	minY = Math.max(clip.y, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+		int	maxY = Math.min(clip.y + clip.height - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+		if (minX > maxX || minY > maxY)
+		{
+			return;
+		}
+		
+		// Edge function steps, opposite to each vertex
+		double	dx0 = -(y2 - y1), dx1 = -(y0 - y2), dx2 = -(y1 - y0);
+		boolean	isTopLeft0 = isTopLeft(x2 - x1, y2 - y1);
+		boolean	isTopLeft1 = isTopLeft(x0 - x2, y0 - y2);
+		boolean	isTopLeft2 = isTopLeft(x1 - x0, y1 - y0);
+		double	dz = (dx0 * z0 + dx1 * z1 + dx2 * z2) / area;
+		
+		// Evaluates the edge functions at each pixel center from per-row terms (not accumulated across
+		// the row), so that a pixel is covered the same way whatever the clip
+		for (int y = minY; y <= maxY; y++)
+		{
+			double	py = y + 0.5;
+			double	r0 = (x2 - x1) * (py - y1) + (y2 - y1) * x1;
+			double	r1 = (x0 - x2) * (py - y2) + (y0 - y2) * x2;
+			double	r2 = (x1 - x0) * (py - y0) + (y1 - y0) * x0;
+			double	rz = (r0 * z0 + r1 * z1 + r2 * z2) / area;
+			
+			// Skips the parts of the row outside each edge (the coverage test below stays exact)
+			int	from = Math.max(minX, Math.max(getSpanStart(r0, dx0), Math.max(getSpanStart(r1, dx1), getSpanStart(r2, dx2))));
+			int	to = Math.min(maxX, Math.min(getSpanEnd(r0, dx0), Math.min(getSpanEnd(r1, dx1), getSpanEnd(r2, dx2))));
+			int	i = y * width + from;
+			for (int x = from; x <= to; x++, i++)
+			{
+				double	px = x + 0.5;
+				double	w0 = r0 + dx0 * px;
+				double	w1 = r1 + dx1 * px;
+				double	w2 = r2 + dx2 * px;
+				if ( (w0 > 0 || w0 == 0 && isTopLeft0) && 
+				     (w1 > 0 || w1 == 0 && isTopLeft1) && 
+				     (w2 > 0 || w2 == 0 && isTopLeft2) )
+				{
+					plot(i, (float) (rz + dz * px), argb);
+				}
+			}
+		}
+	}
+	
+	private static int	getSpanStart(double r, double dx)
+	// Returns the first pixel column at which the edge function r + dx * (x + 0.5) may be non-negative
+	{
+		if (dx > 0)
+		{
+			return (int) Math.floor(-r / dx - 0.5);
+		}
+		return (dx == 0 && r < 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE);
+	}
+	
+	private static int	getSpanEnd(double r, double dx)
+	// Returns the last pixel column at which the edge function r + dx * (x + 0.5) may be non-negative
+	{
+		if (dx < 0)
+		{
+			return (int) Math.ceil(-r / dx - 0.5);
+		}
+		return (dx == 0 && r < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+	}
+	
+	private static boolean	isTopLeft(double dx, double dy)
+	// Returns whether the edge is a top or left edge (pixel centers on it are filled)
+	{
+		return dy < 0 || dy == 0 && dx > 0;
+	}
+	
+	public void	drawLine(double x0, double y0, double z0, 
+	                     double x1, double y1, double z1, int argb, Rectangle clip)
+	// Draws a one pixel wide line including both end points
+	// The pixels are the same for any clip, as the line is always stepped from the image edges
+	{
+		if (argb == 0)
+		{
+			return;
+		}
+		
+		// Clips the line to the image (Liang-Barsky), narrowing the parametric range [t0, t1] by each image edge
+		// Called for every edge of every primitive, so nothing is allocated
+		double	dx = x1 - x0, dy = y1 - y0;
+		double	t0 = 0, t1 = 1;
+		for (int edge = 0; edge < 4; edge++)
+		{
+			double	p = (edge == 0 ? -dx : edge == 1 ? dx : edge == 2 ? -dy : dy);
+			double	q = (edge == 0 ? x0 : edge == 1 ? width - x0 : edge == 2 ? y0 : height - y0);
+			if (p == 0)
+			{
+				if (!(q >= 0))
+					return;
+				continue;
+			}
+			if (p < 0)
+			{
+				t0 = Math.max(t0, q / p);
+			}
+			else
+			{
+				t1 = Math.min(t1, q / p);
+			}
+			if (!(t0 <= t1))
+				return;
+		}
+		double	dz = z1 - z0;
+		double	xa = x0 + t0 * dx, ya = y0 + t0 * dy, za = z0 + t0 * dz;
+		double	xb = x0 + t1 * dx, yb = y0 + t1 * dy, zb = z0 + t1 * dz;
+		
+		// Steps one pixel at a time along the major axis, over the steps that may fall inside the clip
+		int	ia = (int) Math.floor(xa), ja = (int) Math.floor(ya);
+		int	ib = (int) Math.floor(xb), jb = (int) Math.floor(yb);
+		int	steps = Math.max(Math.abs(ib - ia), Math.abs(jb - ja));
+		int	first = 0, last = steps;
+		if (ia == ib && (ia < clip.x || ia >= clip.x + clip.width) || 
+		    ja == jb && (ja < clip.y || ja >= clip.y + clip.height))
+		{
+			return;
+		}
+		if (ia != ib)
+		{
+			first = Math.max(first, getFirstStep(ia, ib, steps, clip.x, clip.x + clip.width));
+			last = Math.min(last, getLastStep(ia, ib, steps, clip.x, clip.x + clip.width));
+		}
+		if (ja != jb)
+		{
+			first = Math.max(first, getFirstStep(ja, jb, steps, clip.y, clip.y + clip.height));
+			last = Math.min(last, getLastStep(ja, jb, steps, clip.y, clip.y + clip.height));
+		}
+		for (int s = first; s <= last; s++)
+		{
+			double	f = (steps == 0 ? 0 : (double) s / steps);
+			int	x = ia + (int) Math.round(f * (ib - ia));
+			int	y = ja + (int) Math.round(f * (jb - ja));
+			if (clip.contains(x, y))
+			{
+				plot(y * width + x, (float) (za + f * (zb - za)) + depthBias, argb);
+			}
+		}
+	}
+	
+	private static int	getFirstStep(int a, int b, int steps, int min, int max)
+	// Returns the first step whose coordinate (stepped from a to b, a != b) may lie in [min, max)
+	// The coordinate at step s is a + round(s * (b - a) / steps)
+	{
+		double	s0 = (min - a - 0.5) * steps / (b - a);
+		double	s1 = (max - a - 0.5) * steps / (b - a);
+		return (int) Math.floor(Math.min(s0, s1)) - 1;
+	}
+	
+	private static int	getLastStep(int a, int b, int steps, int min, int max)
+	// Returns the last step whose coordinate (stepped from a to b, a != b) may lie in [min, max)
+	{
+		double	s0 = (min - a - 0.5) * steps / (b - a);
+		double	s1 = (max - a - 0.5) * steps / (b - a);
+		return (int) Math.ceil(Math.max(s0, s1)) + 1;
+	}
+	
+	public void	fillPoint(double x, double y, double z, int pixelRadius, int argb, Rectangle clip)
+	// Draws a point as a disc (or as a 2x2 pixel square if its pixel radius is 0)
+	{
+		if (argb == 0)
+		{
+			return;
+		}
+		
+		float	pz = (float) z + depthBias;
+		int	sx = (int) (x - pixelRadius), sy = (int) (y - pixelRadius);
+		int	size = Math.max(2, 2 * pixelRadius);
+		double	cx = sx + pixelRadius, cy = sy + pixelRadius;
+		double	r2 = (double) pixelRadius * pixelRadius;
+		for (int j = Math.max(clip.y, sy); j < Math.min(clip.y + clip.height, sy + size); j++)
+		{
+			// Skips the columns outside the disc on this row (the coverage test below stays exact)
+			double	oy = j + 0.5 - cy;
+			double	half = (pixelRadius == 0 ? size : Math.sqrt(Math.max(0, r2 - oy * oy)));
+			int	from = Math.max(Math.max(clip.x, sx), (int) Math.floor(cx - 0.5 - half));
+			int	to = Math.min(Math.min(clip.x + clip.width, sx + size), (int) Math.ceil(cx - 0.5 + half) + 1);
+			for (int i = from; i < to; i++)
+			{
+				double	ox = i + 0.5 - cx;
+				if (pixelRadius == 0 || ox * ox + oy * oy <= r2)
+				{
+					plot(j * width + i, pz, argb);
+				}
+			}
+		}
+	}
+	
+	private void	plot(int i, float z, int argb)
+	// Draws a pixel if it is nearer than the stored depth
+	// Translucent pixels are blended over the image without writing their depth, so they never hide 
+	// what is drawn after them (see TileRasterizer, which draws them after all opaque pixels)
+	{
+		if (z > depth[i])
+		{
+			int	a = argb >>> 24;
+			if (a == 255)
+			{
+				depth[i] = z;
+				pixels[i] = argb;
+			}
+			else
+			{
+				pixels[i] = argb + blend(pixels[i], 255 - a);
+			}
+		}
+	}
+	
+	private static int	blend(int argb, int weight)
+	// Scales each premultiplied channel by the weight (0-255)
+	{
+		return (multiply(argb >>> 24, weight) << 24) | 
+		       (multiply((argb >> 16) & 0xFF, weight) << 16) | 
+		       (multiply((argb >> 8) & 0xFF, weight) << 8) | 
+		        multiply(argb & 0xFF, weight);
+	}
+	
+	private static int	multiply(int c, int a)
+	// Returns c * a / 255, rounded
+	{
+		int	t = c * a + 128;
+		return (t + (t >> 8)) >> 8;
+	}
+}
\ No newline at end of file
@@ -1,102 +1,205 @@
 /* ------------------------------------------------------------
    About:      Attributes class
                Stores common graphical object properties.
+               Instances are immutable and interned, so equal attributes
+               are shared by reference across the scene (except for the
+               pixel radius variants of projected points).
    Author:     Michael C. Petrovich
                michael.c.petrovich@gmail.com
    
-   Copyright © 2003-2007 Michael C. Petrovich
+   Copyright  2003-2007 Michael C. Petrovich
 ------------------------------------------------------------ */
 
 package java3D.storage;
 
 import java.awt.Color;
+import java.util.concurrent.*;
 
-public class	Attributes
+public final class	Attributes
 {
-	public Color	fillColor, edgeColor, pointColor;
-	public boolean	showFill, showEdges, showPoints;
-	public double	fillOpacity, edgeOpacity, pointOpacity;		// Range: [0, 1]
-	public double	pointRadius;		// In coordinate units
-	public int	pixelRadius;		// In pixels
+	public final int	fillRGB, edgeRGB, pointRGB;		// Packed 0xRRGGBB
+	public final boolean	showFill, showEdges, showPoints;
+	public final double	fillOpacity, edgeOpacity, pointOpacity;		// Range: [0, 1]
+	public final double	pointRadius;		// In coordinate units
+	public final int	pixelRadius;		// In pixels
+	
+	// Composite colors (packed 0xAARRGGBB, fully transparent if hidden)
+	public final int	fillARGB, edgeARGB, pointARGB;
+	private volatile Color	fillColor, edgeColor, pointColor;		// Created on first paint, then reused
+	
+	// Interned instances, and the (uninterned) pixel radius variants of this instance (see withPixelRadius)
+	private static final ConcurrentMap<Attributes, Attributes>	interned = new ConcurrentHashMap<Attributes, Attributes>();
+	private static final int	MAX_CACHED_PIXEL_RADIUS = 64;
+	private Attributes[]	pixelRadiusVariants;		// Initially unassigned for efficiency
+	
+	public static final Attributes	DEFAULT = intern(new Attributes(0xFF0000, 0x000000, 0x0000FF, 
+	                                                                true, true, true, 
+	                                                                0.75, 1.00, 0.50, 
+	                                                                0.05, 1));
 	
 	
 	/* Constructors
 	---------------------------------------------------------------------- */
-	public	Attributes()
+	private	Attributes(int fillRGB, int edgeRGB, int pointRGB, 
+	                   boolean showFill, boolean showEdges, boolean showPoints, 
+	                   double fillOpacity, double edgeOpacity, double pointOpacity, 
+	                   double pointRadius, int pixelRadius)
 	{
-		fillColor = Color.RED;
-		edgeColor = Color.BLACK;
-		pointColor = Color.BLUE;
+		this.fillRGB = fillRGB & 0xFFFFFF;
+		this.edgeRGB = edgeRGB & 0xFFFFFF;
+		this.pointRGB = pointRGB & 0xFFFFFF;
 		
-		showFill = true;
-		showEdges = true;
-		showPoints = true;
+		this.showFill = showFill;
+		this.showEdges = showEdges;
+		this.showPoints = showPoints;
 		
-		fillOpacity = 0.75;
-		edgeOpacity = 1.00;
-		pointOpacity = 0.50;
+		this.fillOpacity = fillOpacity;
+		this.edgeOpacity = edgeOpacity;
+		this.pointOpacity = pointOpacity;
 		
-		pointRadius = 0.05;
-		pixelRadius = 1;
+		this.pointRadius = pointRadius;
+		this.pixelRadius = pixelRadius;
+		
+		fillARGB = getComposite(this.fillRGB, fillOpacity, showFill);
+		edgeARGB = getComposite(this.edgeRGB, edgeOpacity, showEdges);
+		pointARGB = getComposite(this.pointRGB, pointOpacity, showPoints);
 	}
 	
-	public	Attributes(Attributes attr)
+	private static Attributes	intern(Attributes attr)
+	// Returns the shared instance equal to the given attributes
 	{
-		set(attr);
+		Attributes	shared = interned.putIfAbsent(attr, attr);
+		return (shared != null ? shared : attr);
 	}
 	
 	
 	/* Data access
+	   Attributes are never modified; each of these returns the (shared) attributes with the given changes
 	---------------------------------------------------------------------- */
-	public void	set(Attributes attr)
+	public Attributes	withFill(int rgb, double opacity, boolean show)
 	{
-		fillColor = attr.fillColor;
-		edgeColor = attr.edgeColor;
-		pointColor = attr.pointColor;
-		
-		showFill = attr.showFill;
-		showEdges = attr.showEdges;
-		showPoints = attr.showPoints;
-		
-		fillOpacity = attr.fillOpacity;
-		edgeOpacity = attr.edgeOpacity;
-		pointOpacity = attr.pointOpacity;
+		return intern(new Attributes(rgb, edgeRGB, pointRGB, show, showEdges, showPoints, 
+		                             opacity, edgeOpacity, pointOpacity, pointRadius, pixelRadius));
+	}
+	
+	public Attributes	withEdges(int rgb, double opacity, boolean show)
+	{
+		return intern(new Attributes(fillRGB, rgb, pointRGB, showFill, show, showPoints, 
+		                             fillOpacity, opacity, pointOpacity, pointRadius, pixelRadius));
+	}
+	
+	public Attributes	withPoints(int rgb, double opacity, boolean show)
+	{
+		return intern(new Attributes(fillRGB, edgeRGB, rgb, showFill, showEdges, show, 
+		                             fillOpacity, edgeOpacity, opacity, pointRadius, pixelRadius));
+	}
+	
+	public Attributes	withPointRadius(double pointRadius)
+	{
+		return intern(new Attributes(fillRGB, edgeRGB, pointRGB, showFill, showEdges, showPoints, 
+		                             fillOpacity, edgeOpacity, pointOpacity, pointRadius, pixelRadius));
+	}
+	
+	public Attributes	withPixelRadius(int pixelRadius)
+	// Called for every projected point, so small radii are looked up without allocating
+	// Pixel radii change with the zoom, so their variants are kept with this instance rather than interned 
+	// (the intern table never shrinks); larger radii get a new, unshared instance each time
+	{
+		if (pixelRadius == this.pixelRadius)
+		{
+			return this;
+		}
+		if (pixelRadius < 0 || pixelRadius >= MAX_CACHED_PIXEL_RADIUS)
+		{
+			return new Attributes(fillRGB, edgeRGB, pointRGB, showFill, showEdges, showPoints, 
+			                      fillOpacity, edgeOpacity, pointOpacity, pointRadius, pixelRadius);
+		}
 		
-		pointRadius = attr.pointRadius;
-		pixelRadius = attr.pixelRadius;
+		// Concurrent callers may both create a missing variant, and either may be kept
+		Attributes[]	variants = pixelRadiusVariants;
+		if (variants == null)
+		{
+			variants = pixelRadiusVariants = new Attributes[MAX_CACHED_PIXEL_RADIUS];
+		}
+		Attributes	variant = variants[pixelRadius];
+		if (variant == null)
+		{
+			variant = new Attributes(fillRGB, edgeRGB, pointRGB, showFill, showEdges, showPoints, 
+			                         fillOpacity, edgeOpacity, pointOpacity, pointRadius, pixelRadius);
+			variants[pixelRadius] = variant;
+		}
+		return variant;
+	}
+	
+	public boolean	equals(Object obj)
+	{
+		if (!(obj instanceof Attributes))
+		{
+			return false;
+		}
+		Attributes	attr = (Attributes) obj;
+		return fillRGB == attr.fillRGB && edgeRGB == attr.edgeRGB && pointRGB == attr.pointRGB && 
+		       showFill == attr.showFill && showEdges == attr.showEdges && showPoints == attr.showPoints && 
+		       Double.compare(fillOpacity, attr.fillOpacity) == 0 && 
+		       Double.compare(edgeOpacity, attr.edgeOpacity) == 0 && 
+		       Double.compare(pointOpacity, attr.pointOpacity) == 0 && 
+		       Double.compare(pointRadius, attr.pointRadius) == 0 && 
+		       pixelRadius == attr.pixelRadius;
 	}
 	
-	public Attributes	clone()
+	public int	hashCode()
 	{
-		Attributes	attr = new Attributes();
-		attr.set(this);
-		return attr;
+		int	hash = fillRGB;
+		hash = 31 * hash + edgeRGB;
+		hash = 31 * hash + pointRGB;
+		hash = 31 * hash + (showFill ? 1 : 0) + (showEdges ? 2 : 0) + (showPoints ? 4 : 0);
+		hash = 31 * hash + Double.hashCode(fillOpacity);
+		hash = 31 * hash + Double.hashCode(edgeOpacity);
+		hash = 31 * hash + Double.hashCode(pointOpacity);
+		hash = 31 * hash + Double.hashCode(pointRadius);
+		hash = 31 * hash + pixelRadius;
+		return hash;
 	}
 	
 	
 	/* Color
 	---------------------------------------------------------------------- */
 	public Color	getFillColor()
-	// Returns the composite fill color
+	// Returns the composite fill color (shared, as are the attributes)
 	{
-		return getCompositeColor(fillColor, fillOpacity, showFill);
+		Color	color = fillColor;
+		if (color == null)
+		{
+			fillColor = color = new Color(fillARGB, true);
+		}
+		return color;
 	}
 	
 	public Color	getEdgeColor()
-	// Returns the composite edge color
+	// Returns the composite edge color (shared, as are the attributes)
 	{
-		return getCompositeColor(edgeColor, edgeOpacity, showEdges);
+		Color	color = edgeColor;
+		if (color == null)
+		{
+			edgeColor = color = new Color(edgeARGB, true);
+		}
+		return color;
 	}
 	
 	public Color	getPointColor()
-	// Returns the composite point color
+	// Returns the composite point color (shared, as are the attributes)
 	{
-		return getCompositeColor(pointColor, pointOpacity, showPoints);
+		Color	color = pointColor;
+		if (color == null)
+		{
+			pointColor = color = new Color(pointARGB, true);
+		}
+		return color;
 	}
 	
-	private static Color	getCompositeColor(Color color, double opacity, boolean show)
+	private static int	getComposite(int rgb, double opacity, boolean show)
 	{
 		opacity = (show ? opacity : 0);
-		return new Color(color.getRed(), color.getGreen(), color.getBlue(), (int)(opacity*255));
+		return ((int)(opacity*255) << 24) | rgb;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,880 @@
+/* ------------------------------------------------------------
+   About:      Bounding volume hierarchy class
+               Indexes the triangles and path segments of a group
+               for box, ray and nearest-primitive queries.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class	BVH
+{
+	// Indexed meshes, with their modification counters at build time
+	private Mesh[]	meshes;
+	private int[]	modCounts;
+	private Mesh[]	copies;		// Copies of the meshes that the tree is built from (only during the build)
+	
+	// Primitives (mesh and primitive index), and the primitive order that leaves index into
+	private int[]	primMesh, primIndex;
+	private int[]	order;
+	private int	numPrims = 0;
+	
+	// Nodes: bounds (6 per node, min then max), children, and the order range of leaves
+	private double[]	bounds;
+	private int[]	left, right;		// Child node indices, -1 for leaves
+	private int[]	first, count;
+	private int	numNodes = 0;
+	
+	private long	buildTime;		// Nanoseconds
+	
+	// Build settings
+	private static final int	NUM_BINS = 16;		// SAH candidate planes per axis
+	private static final int	MAX_LEAF_SIZE = 4;		// Leaves are always split above this many primitives...
+	private static final int	MAX_LEAF_SIZE_SAH = 16;		// ...unless the SAH prefers a leaf, up to this many
+	private static final int	PARALLEL_SIZE = 4096;		// Smallest node built with a forked task per child
+	
+	public interface	Visitor
+	{
+		public void	visit(Mesh mesh, int primitive);
+	}
+	
+	public static class	Snapshot
+	// The meshes of a group with their modification counters, and copy-on-write copies of them
+	// Taken on the thread that modifies the group, so that the tree can then be built on any thread
+	{
+		private Mesh[]	meshes, copies;
+		private int[]	modCounts;
+		
+		public	Snapshot(Group group)
+		{
+			meshes = getMeshes(group).toArray(new Mesh[0]);
+			copies = new Mesh[meshes.length];
+			modCounts = new int[meshes.length];
+			for (int m = 0; m < meshes.length; m++)
+			{
+				copies[m] = (Mesh) meshes[m].clone();
+				modCounts[m] = meshes[m].getModCount();
+			}
+		}
+	}
+	
+	public static class	Hit
+	// A primitive found by a query, with the nearest point found on it
+	{
+		public Mesh	mesh;
+		public int	primitive;
+		public Point3D	point;
+		public double	distance;		// Along the ray (in ray direction lengths), or from the query point
+		
+		public	Hit(Mesh mesh, int primitive, Point3D point, double distance)
+		{
+			this.mesh = mesh;
+			this.primitive = primitive;
+			this.point = point;
+			this.distance = distance;
+		}
+		
+		public String	toString()
+		{
+			return new String("Primitive " + primitive + " of " + mesh + " at " + point);
+		}
+	}
+	
+	
+	/* Constructors
+	---------------------------------------------------------------------- */
+	public	BVH(Group group)
+	{
+		this(group, null);
+	}
+	
+	public	BVH(Group group, ForkJoinPool pool)
+	// Indexes the triangle and path meshes of the group and its subgroups (other objects are ignored)
+	// The top of the tree is built concurrently if a pool is given
+	{
+		this(new Snapshot(group), pool);
+	}
+	
+	public	BVH(Snapshot snapshot, ForkJoinPool pool)
+	// Indexes the meshes of the snapshot as they were when it was taken, even if they have changed since
+	// Queries report (and read) the original meshes, so they are only valid while isBuiltFrom holds
+	{
+		long	start = System.nanoTime();
+		meshes = snapshot.meshes;
+		modCounts = snapshot.modCounts;
+		copies = snapshot.copies;
+		for (int m = 0; m < copies.length; m++)
+		{
+			numPrims += copies[m].size();
+		}
+		new Builder().build(pool);
+		copies = null;
+		buildTime = System.nanoTime() - start;
+	}
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public boolean	isBuiltFrom(Group group)
+	// Returns whether the hierarchy is up to date with the meshes of the given group
+	{
+		java.util.List<Mesh>	list = getMeshes(group);
+		if (list.size() != meshes.length)
+		{
+			return false;
+		}
+		for (int m = 0; m < meshes.length; m++)
+		{
+			if (list.get(m) != meshes[m] || meshes[m].getModCount() != modCounts[m])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	public int	size()
+	// Returns the number of indexed primitives
+	{
+		return numPrims;
+	}
+	
+	public Point3D	getMin()
+	// Returns the smallest coordinates of the indexed primitives
+	{
+		return (numNodes > 0 ? new Point3D(bounds[0], bounds[1], bounds[2]) : new Point3D());
+	}
+	
+	public Point3D	getMax()
+	// Returns the largest coordinates of the indexed primitives
+	{
+		return (numNodes > 0 ? new Point3D(bounds[3], bounds[4], bounds[5]) : new Point3D());
+	}
+	
+	public int	getNumNodes()
+	{
+		return numNodes;
+	}
+	
+	public double	getBuildTime()
+	// Returns the build time in milliseconds
+	{
+		return buildTime / 1e6;
+	}
+	
+	public String	toString()
+	{
+		Formatter	f = new Formatter();
+		f.format("BVH: %d primitives in %d meshes, %d nodes, built in %.1f ms", numPrims, meshes.length, numNodes, getBuildTime());
+		return f.toString();
+	}
+	
+	private static java.util.List<Mesh>	getMeshes(Group group)
+	// Returns the triangle and path meshes of the group and its subgroups, in drawing order
+	{
+		java.util.List<Mesh>	list = new ArrayList<Mesh>();
+		for (GraphicObject obj : group.getView())
+		{
+			if (obj instanceof TriangleMesh || obj instanceof PathMesh)
+			{
+				list.add((Mesh) obj);
+			}
+			else
+			if (obj instanceof Group)
+			{
+				list.addAll(getMeshes((Group) obj));
+			}
+		}
+		return list;
+	}
+	
+	
+	/* Queries
+	---------------------------------------------------------------------- */
+	public void	findInBox(Point3D min, Point3D max, Visitor visitor)
+	// Visits each primitive whose bounding box overlaps the given box (bounds included)
+	{
+		double[]	box = { min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ() };
+		int[]	stack = new int[64];
+		int	size = 0;
+		if (numNodes > 0)
+		{
+			stack[size++] = 0;
+		}
+		double[]	b = new double[6];
+		while (size > 0)
+		{
+			int	node = stack[--size];
+			if (!overlaps(bounds, 6 * node, box))
+			{
+				continue;
+			}
+			if (left[node] < 0)
+			{
+				for (int i = first[node]; i < first[node] + count[node]; i++)
+				{
+					int	p = order[i];
+					getPrimitiveBounds(meshes, p, b, 0);
+					if (overlaps(b, 0, box))
+					{
+						visitor.visit(meshes[primMesh[p]], primIndex[p]);
+					}
+				}
+				continue;
+			}
+			stack = push(stack, size, left[node], right[node]);
+			size += 2;
+		}
+	}
+	
+	public Hit	castRay(Point3D origin, Point3D direction, double radius)
+	{
+		return castRay(origin, direction, radius, Double.POSITIVE_INFINITY);
+	}
+	
+	public Hit	castRay(Point3D origin, Point3D direction, double radius, double maxDistance)
+	// Returns the first primitive hit by the ray within the given distance (in direction lengths), or null if none
+	// Triangles are hit exactly; path segments are hit if the ray passes within the given radius
+	{
+		double	ox = origin.getX(), oy = origin.getY(), oz = origin.getZ();
+		double	dx = direction.getX(), dy = direction.getY(), dz = direction.getZ();
+		double[]	inverse = { 1 / dx, 1 / dy, 1 / dz };
+		double[]	o = { ox, oy, oz };
+		
+		Hit	hit = null;
+		double	nearest = Math.nextUp(maxDistance);
+		double[]	entry = new double[1];
+		int[]	stack = new int[64];
+		int	size = 0;
+		if (numNodes > 0 && hitsBox(o, inverse, radius, 0, nearest, entry))
+		{
+			stack[size++] = 0;
+		}
+		while (size > 0)
+		{
+			int	node = stack[--size];
+			if (!hitsBox(o, inverse, radius, node, nearest, entry))
+			// Nearer hit found since the node was pushed
+			{
+				continue;
+			}
+			if (left[node] < 0)
+			{
+				for (int i = first[node]; i < first[node] + count[node]; i++)
+				{
+					int	p = order[i];
+					Mesh	mesh = meshes[primMesh[p]];
+					double	t = (mesh.getPrimitiveSize() == 3 ?
+					            intersectTriangle(mesh, primIndex[p], ox, oy, oz, dx, dy, dz) :
+					            intersectSegment(mesh, primIndex[p], ox, oy, oz, dx, dy, dz, radius));
+					if (t < nearest)
+					{
+						nearest = t;
+						hit = new Hit(mesh, primIndex[p], new Point3D(ox + t * dx, oy + t * dy, oz + t * dz), t);
+					}
+				}
+				continue;
+			}
+			
+			// Visits the nearer child first (pushed last)
+			boolean	isLeftHit = hitsBox(o, inverse, radius, left[node], nearest, entry);
+			double	leftEntry = entry[0];
+			boolean	isRightHit = hitsBox(o, inverse, radius, right[node], nearest, entry);
+			double	rightEntry = entry[0];
+			if (isLeftHit && isRightHit)
+			{
+				boolean	isLeftNearer = (leftEntry <= rightEntry);
+				stack = push(stack, size, (isLeftNearer ? right[node] : left[node]), (isLeftNearer ? left[node] : right[node]));
+				size += 2;
+			}
+			else
+			if (isLeftHit || isRightHit)
+			{
+				stack = push(stack, size, (isLeftHit ? left[node] : right[node]), -1);
+				size++;
+			}
+		}
+		return hit;
+	}
+	
+	public Hit	findNearest(Point3D point, double maxDistance)
+	// Returns the primitive nearest to the given point within the given distance, or null if none
+	{
+		double	px = point.getX(), py = point.getY(), pz = point.getZ();
+		Hit	hit = null;
+		double	nearest2 = maxDistance * maxDistance;
+		double[]	closest = new double[3];
+		int[]	stack = new int[64];
+		int	size = 0;
+		if (numNodes > 0 && getDistance2(0, px, py, pz) <= nearest2)
+		{
+			stack[size++] = 0;
+		}
+		while (size > 0)
+		{
+			int	node = stack[--size];
+			if (getDistance2(node, px, py, pz) > nearest2)
+			// Bound tightened since the node was pushed
+			{
+				continue;
+			}
+			if (left[node] < 0)
+			{
+				for (int i = first[node]; i < first[node] + count[node]; i++)
+				{
+					int	p = order[i];
+					Mesh	mesh = meshes[primMesh[p]];
+					if (mesh.getPrimitiveSize() == 3)
+					{
+						getClosestOnTriangle(mesh, primIndex[p], px, py, pz, closest);
+					}
+					else
+					{
+						getClosestOnSegment(mesh, primIndex[p], px, py, pz, closest);
+					}
+					double	ex = closest[0] - px, ey = closest[1] - py, ez = closest[2] - pz;
+					double	d2 = ex * ex + ey * ey + ez * ez;
+					if (d2 <= nearest2)
+					{
+						nearest2 = d2;
+						hit = new Hit(mesh, primIndex[p], new Point3D(closest[0], closest[1], closest[2]), Math.sqrt(d2));
+					}
+				}
+				continue;
+			}
+			
+			// Visits the nearer child first (pushed last)
+			double	leftDistance2 = getDistance2(left[node], px, py, pz);
+			double	rightDistance2 = getDistance2(right[node], px, py, pz);
+			boolean	isLeftNearer = (leftDistance2 <= rightDistance2);
+			stack = push(stack, size, (isLeftNearer ? right[node] : left[node]), (isLeftNearer ? left[node] : right[node]));
+			size += 2;
+		}
+		return hit;
+	}
+	
+	
+	/* Query internals
+	---------------------------------------------------------------------- */
+	private static int[]	push(int[] stack, int size, int a, int b)
+	// Pushes one or two nodes (b < 0 pushes a only), growing the stack if needed
+	{
+		if (size + 2 > stack.length)
+		{
+			stack = Arrays.copyOf(stack, 2 * stack.length);
+		}
+		stack[size] = a;
+		if (b >= 0)
+		{
+			stack[size + 1] = b;
+		}
+		return stack;
+	}
+	
+	private static boolean	overlaps(double[] b, int i, double[] box)
+	{
+		return b[i] <= box[3] && b[i + 3] >= box[0] &&
+		       b[i + 1] <= box[4] && b[i + 4] >= box[1] &&
+		       b[i + 2] <= box[5] && b[i + 5] >= box[2];
+	}
+	
+	private boolean	hitsBox(double[] o, double[] inverse, double radius, int node, double maxT, double[] entry)
+	// Slab test of the ray against the node bounds grown by the radius; stores the entry distance
+	{
+		double	near = 0, far = maxT;
+		for (int axis = 0; axis < 3; axis++)
+		{
+			double	t0 = (bounds[6 * node + axis] - radius - o[axis]) * inverse[axis];
+			double	t1 = (bounds[6 * node + axis + 3] + radius - o[axis]) * inverse[axis];
+			if (t0 > t1)
+			{
+				double	t = t0;
+				t0 = t1;
+				t1 = t;
+			}
+			
+			// NaN (ray in a slab plane) compares false and leaves the range unchanged
+			near = (t0 > near ? t0 : near);
+			far = (t1 < far ? t1 : far);
+			if (near > far)
+			{
+				return false;
+			}
+		}
+		entry[0] = near;
+		return true;
+	}
+	
+	private double	getDistance2(int node, double px, double py, double pz)
+	// Returns the squared distance from the point to the node bounds (0 inside)
+	{
+		int	i = 6 * node;
+		double	ex = Math.max(0, Math.max(bounds[i] - px, px - bounds[i + 3]));
+		double	ey = Math.max(0, Math.max(bounds[i + 1] - py, py - bounds[i + 4]));
+		double	ez = Math.max(0, Math.max(bounds[i + 2] - pz, pz - bounds[i + 5]));
+		return ex * ex + ey * ey + ez * ez;
+	}
+	
+	private static double	intersectTriangle(Mesh mesh, int triangle, double ox, double oy, double oz,
+	                                          double dx, double dy, double dz)
+	// Returns the ray distance to the triangle (either side), or infinity if missed
+	{
+		int	v0 = mesh.getVertexIndex(triangle, 0), v1 = mesh.getVertexIndex(triangle, 1), v2 = mesh.getVertexIndex(triangle, 2);
+		double	ax = mesh.getX(v0), ay = mesh.getY(v0), az = mesh.getZ(v0);
+		double	e1x = mesh.getX(v1) - ax, e1y = mesh.getY(v1) - ay, e1z = mesh.getZ(v1) - az;
+		double	e2x = mesh.getX(v2) - ax, e2y = mesh.getY(v2) - ay, e2z = mesh.getZ(v2) - az;
+		
+		// Solves origin + t*direction = a + u*e1 + v*e2 by Cramer's rule
+		double	px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double	det = e1x * px + e1y * py + e1z * pz;
+		if (det == 0)
+		// Ray parallel to the triangle (or degenerate triangle)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double	sx = ox - ax, sy = oy - ay, sz = oz - az;
+		double	u = (sx * px + sy * py + sz * pz) / det;
+		if (u < 0 || u > 1)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double	qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double	v = (dx * qx + dy * qy + dz * qz) / det;
+		if (v < 0 || u + v > 1)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double	t = (e2x * qx + e2y * qy + e2z * qz) / det;
+		return (t >= 0 ? t : Double.POSITIVE_INFINITY);
+	}
+	
+	private static double	intersectSegment(Mesh mesh, int segment, double ox, double oy, double oz,
+	                                         double dx, double dy, double dz, double radius)
+	// Returns the ray distance where the ray passes nearest the segment, or infinity if not within the radius
+	{
+		int	v0 = mesh.getVertexIndex(segment, 0), v1 = mesh.getVertexIndex(segment, 1);
+		double	ax = mesh.getX(v0), ay = mesh.getY(v0), az = mesh.getZ(v0);
+		double	ux = mesh.getX(v1) - ax, uy = mesh.getY(v1) - ay, uz = mesh.getZ(v1) - az;
+		double	wx = ox - ax, wy = oy - ay, wz = oz - az;
+		
+		// Closest points of the ray (t >= 0) and segment (0 <= s <= 1)
+		double	dd = dx * dx + dy * dy + dz * dz, du = dx * ux + dy * uy + dz * uz, uu = ux * ux + uy * uy + uz * uz;
+		double	dw = dx * wx + dy * wy + dz * wz, uw = ux * wx + uy * wy + uz * wz;
+		double	denom = dd * uu - du * du;
+		double	s = (denom > 1e-12 * dd * uu ? (dd * uw - du * dw) / denom : 0);
+		s = Math.max(0, Math.min(1, s));
+		double	t = Math.max(0, (s * du - dw) / dd);
+		s = (uu > 0 ? Math.max(0, Math.min(1, (t * du + uw) / uu)) : 0);
+		
+		double	ex = wx + t * dx - s * ux, ey = wy + t * dy - s * uy, ez = wz + t * dz - s * uz;
+		return (ex * ex + ey * ey + ez * ez <= radius * radius ? t : Double.POSITIVE_INFINITY);
+	}
+	
+	private static void	getClosestOnSegment(Mesh mesh, int segment, double px, double py, double pz, double[] closest)
+	{
+		int	v0 = mesh.getVertexIndex(segment, 0), v1 = mesh.getVertexIndex(segment, 1);
+		double	ax = mesh.getX(v0), ay = mesh.getY(v0), az = mesh.getZ(v0);
+		double	ux = mesh.getX(v1) - ax, uy = mesh.getY(v1) - ay, uz = mesh.getZ(v1) - az;
+		double	uu = ux * ux + uy * uy + uz * uz;
+		double	s = (uu > 0 ? ((px - ax) * ux + (py - ay) * uy + (pz - az) * uz) / uu : 0);
+		s = Math.max(0, Math.min(1, s));
+		closest[0] = ax + s * ux;
+		closest[1] = ay + s * uy;
+		closest[2] = az + s * uz;
+	}
+	
+	private static void	getClosestOnTriangle(Mesh mesh, int triangle, double px, double py, double pz, double[] closest)
+	// Finds the closest triangle point by the Voronoi region of the point (vertex, edge or face)
+	{
+		int	v0 = mesh.getVertexIndex(triangle, 0), v1 = mesh.getVertexIndex(triangle, 1), v2 = mesh.getVertexIndex(triangle, 2);
+		double	ax = mesh.getX(v0), ay = mesh.getY(v0), az = mesh.getZ(v0);
+		double	abx = mesh.getX(v1) - ax, aby = mesh.getY(v1) - ay, abz = mesh.getZ(v1) - az;
+		double	acx = mesh.getX(v2) - ax, acy = mesh.getY(v2) - ay, acz = mesh.getZ(v2) - az;
+		double	apx = px - ax, apy = py - ay, apz = pz - az;
+		double	u = 0, v = 0;		// Weights of b and c
+		
+		double	d1 = abx * apx + aby * apy + abz * apz, d2 = acx * apx + acy * apy + acz * apz;
+		double	bpx = apx - abx, bpy = apy - aby, bpz = apz - abz;
+		double	d3 = abx * bpx + aby * bpy + abz * bpz, d4 = acx * bpx + acy * bpy + acz * bpz;
+		double	cpx = apx - acx, cpy = apy - acy, cpz = apz - acz;
+		double	d5 = abx * cpx + aby * cpy + abz * cpz, d6 = acx * cpx + acy * cpy + acz * cpz;
+		double	vc = d1 * d4 - d3 * d2, vb = d5 * d2 - d1 * d6, va = d3 * d6 - d5 * d4;
+		if (d1 <= 0 && d2 <= 0)
+		// Vertex a
+		{}
+		else
+		if (d3 >= 0 && d4 <= d3)
+		// Vertex b
+		{
+			u = 1;
+		}
+		else
+		if (d6 >= 0 && d5 <= d6)
+		// Vertex c
+		{
+			v = 1;
+		}
+		else
+		if (vc <= 0 && d1 >= 0 && d3 <= 0)
+		// Edge ab
+		{
+			u = d1 / (d1 - d3);
+		}
+		else
+		if (vb <= 0 && d2 >= 0 && d6 <= 0)
+		// Edge ac
+		{
+			v = d2 / (d2 - d6);
+		}
+		else
+		if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0)
+		// Edge bc
+		{
+			v = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+			u = 1 - v;
+		}
+		else
+		// Face
+		{
+			double	sum = va + vb + vc;
+			u = vb / sum;
+			v = vc / sum;
+		}
+		closest[0] = ax + u * abx + v * acx;
+		closest[1] = ay + u * aby + v * acy;
+		closest[2] = az + u * abz + v * acz;
+	}
+	
+	private void	getPrimitiveBounds(Mesh[] from, int p, double[] b, int i)
+	// Stores the bounds of the given primitive of the given meshes (6 values from index i)
+	{
+		Mesh	mesh = from[primMesh[p]];
+		b[i] = b[i + 1] = b[i + 2] = Double.POSITIVE_INFINITY;
+		b[i + 3] = b[i + 4] = b[i + 5] = Double.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < mesh.getPrimitiveSize(); corner++)
+		{
+			int	v = mesh.getVertexIndex(primIndex[p], corner);
+			b[i] = Math.min(b[i], mesh.getX(v));
+			b[i + 1] = Math.min(b[i + 1], mesh.getY(v));
+			b[i + 2] = Math.min(b[i + 2], mesh.getZ(v));
+			b[i + 3] = Math.max(b[i + 3], mesh.getX(v));
+			b[i + 4] = Math.max(b[i + 4], mesh.getY(v));
+			b[i + 5] = Math.max(b[i + 5], mesh.getZ(v));
+		}
+	}
+	
+	
+	/* Construction
+	---------------------------------------------------------------------- */
+	private class	Builder
+	// Binned SAH build into linked nodes, then flattened into the node arrays
+	{
+		private double[]	primBounds;		// 6 per primitive
+		private double[]	centroid;		// 3 per primitive
+		
+		private class	Node
+		{
+			public double[]	bounds = new double[6];
+			public Node	left, right;
+			public int	first, count;
+		}
+		
+		public void	build(ForkJoinPool pool)
+		{
+			// Primitive references, bounds and centroids
+			primMesh = new int[numPrims];
+			primIndex = new int[numPrims];
+			order = new int[numPrims];
+			primBounds = new double[6 * numPrims];
+			centroid = new double[3 * numPrims];
+			int	p = 0;
+			for (int m = 0; m < copies.length; m++)
+			{
+				for (int i = 0; i < copies[m].size(); i++, p++)
+				{
+					primMesh[p] = m;
+					primIndex[p] = i;
+					order[p] = p;
+					getPrimitiveBounds(copies, p, primBounds, 6 * p);
+					for (int axis = 0; axis < 3; axis++)
+					{
+						centroid[3 * p + axis] = (primBounds[6 * p + axis] + primBounds[6 * p + axis + 3]) / 2;
+					}
+				}
+			}
+			
+			Node	root = new Node();
+			Split	task = new Split(root, 0, numPrims);
+			if (pool == null || numPrims < PARALLEL_SIZE)
+			{
+				task.compute();
+			}
+			else
+			{
+				pool.invoke(task);
+			}
+			
+			// Flattens the tree depth-first (a node count is at most 2n - 1)
+			int	capacity = Math.max(1, 2 * numPrims - 1);
+			bounds = new double[6 * capacity];
+			left = new int[capacity];
+			right = new int[capacity];
+			first = new int[capacity];
+			count = new int[capacity];
+			if (numPrims > 0)
+			{
+				flatten(root);
+			}
+		}
+		
+		private void	flatten(Node root)
+		// Numbers the nodes depth-first (a node, then its left subtree, then its right subtree)
+		// Iterative, as degenerate inputs (e.g. exponentially spaced primitives) give very deep trees
+		{
+			Deque<Node>	nodes = new ArrayDeque<Node>();
+			Deque<Integer>	links = new ArrayDeque<Integer>();		// Parent index * 2 (+ 1 for a right child), -1 for the root
+			nodes.push(root);
+			links.push(-1);
+			while (!nodes.isEmpty())
+			{
+				Node	node = nodes.pop();
+				int	link = links.pop();
+				int	n = numNodes++;
+				if (link >= 0)
+				{
+					if ((link & 1) == 0)
+					{
+						left[link >> 1] = n;
+					}
+					else
+					{
+						right[link >> 1] = n;
+					}
+				}
+				System.arraycopy(node.bounds, 0, bounds, 6 * n, 6);
+				first[n] = node.first;
+				count[n] = node.count;
+				left[n] = right[n] = -1;
+				if (node.left != null)
+				{
+					nodes.push(node.right);
+					links.push(2 * n + 1);
+					nodes.push(node.left);
+					links.push(2 * n);
+				}
+			}
+		}
+		
+		private class	Split extends RecursiveAction
+		// Builds the subtree of the primitives in the given order range
+		{
+			private static final long	serialVersionUID = 1L;
+			
+			private Node	node;
+			private int	from, to;
+			
+			public	Split(Node node, int from, int to)
+			{
+				this.node = node;
+				this.from = from;
+				this.to = to;
+			}
+			
+			protected void	compute()
+			// Splits the nodes iteratively, as degenerate inputs give very deep trees
+			// Within a pool, the smaller side of a large enough range is forked, so that nested joins stay 
+			// logarithmically deep
+			{
+				Deque<Split>	pending = new ArrayDeque<Split>();
+				java.util.List<Split>	forked = new ArrayList<Split>();
+				pending.push(this);
+				while (!pending.isEmpty())
+				{
+					Split	split = pending.pop();
+					int	mid = split.split();
+					if (mid < 0)
+					// Leaf
+					{
+						continue;
+					}
+					
+					split.node.left = new Node();
+					split.node.right = new Node();
+					Split	leftTask = new Split(split.node.left, split.from, mid);
+					Split	rightTask = new Split(split.node.right, mid, split.to);
+					boolean	isLeftSmaller = (mid - split.from < split.to - mid);
+					Split	smaller = (isLeftSmaller ? leftTask : rightTask);
+					if (smaller.to - smaller.from >= PARALLEL_SIZE && getPool() != null)
+					{
+						smaller.fork();
+						forked.add(smaller);
+					}
+					else
+					{
+						pending.push(smaller);
+					}
+					pending.push(isLeftSmaller ? rightTask : leftTask);
+				}
+				for (Split task : forked)
+				{
+					task.join();
+				}
+			}
+			
+			private int	split()
+			// Measures the node, then partitions its range
+			// Returns the first index of the right side, or -1 if the node is a leaf
+			{
+				// Node and centroid bounds
+				double[]	b = node.bounds;
+				double[]	c = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				                  Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+				Arrays.fill(b, 0, 3, Double.POSITIVE_INFINITY);
+				Arrays.fill(b, 3, 6, Double.NEGATIVE_INFINITY);
+				for (int i = from; i < to; i++)
+				{
+					int	p = order[i];
+					for (int axis = 0; axis < 3; axis++)
+					{
+						b[axis] = Math.min(b[axis], primBounds[6 * p + axis]);
+						b[axis + 3] = Math.max(b[axis + 3], primBounds[6 * p + axis + 3]);
+						c[axis] = Math.min(c[axis], centroid[3 * p + axis]);
+						c[axis + 3] = Math.max(c[axis + 3], centroid[3 * p + axis]);
+					}
+				}
+				node.first = from;
+				node.count = to - from;
+				if (to - from <= MAX_LEAF_SIZE)
+				{
+					return -1;
+				}
+				return partition(c);		// -1 for a leaf preferred by the SAH
+			}
+			
+			private int	partition(double[] c)
+			// Splits the range at the cheapest binned plane along the widest centroid axis
+			// Returns the first index of the right side, or -1 if the range should stay a leaf
+			{
+				int	axis = 0;
+				for (int a = 1; a < 3; a++)
+				{
+					if (c[a + 3] - c[a] > c[axis + 3] - c[axis])
+					{
+						axis = a;
+					}
+				}
+				double	lo = c[axis], extent = c[axis + 3] - c[axis];
+				if (!(extent > 0))
+				// Coincident centroids (or invalid coordinates), split in half
+				{
+					return (from + to) >>> 1;
+				}
+				
+				// Bins the primitives by centroid
+				int[]	binCount = new int[NUM_BINS];
+				double[]	binBounds = new double[6 * NUM_BINS];
+				for (int k = 0; k < NUM_BINS; k++)
+				{
+					Arrays.fill(binBounds, 6 * k, 6 * k + 3, Double.POSITIVE_INFINITY);
+					Arrays.fill(binBounds, 6 * k + 3, 6 * k + 6, Double.NEGATIVE_INFINITY);
+				}
+				double	scale = NUM_BINS / extent;
+				for (int i = from; i < to; i++)
+				{
+					int	p = order[i];
+					int	k = getBin(p, axis, lo, scale);
+					binCount[k]++;
+					for (int a = 0; a < 3; a++)
+					{
+						binBounds[6 * k + a] = Math.min(binBounds[6 * k + a], primBounds[6 * p + a]);
+						binBounds[6 * k + a + 3] = Math.max(binBounds[6 * k + a + 3], primBounds[6 * p + a + 3]);
+					}
+				}
+				
+				// Sweeps from the right for the right-side costs, then from the left for the best plane
+				double[]	rightCost = new double[NUM_BINS];
+				double[]	box = new double[6];
+				resetBox(box);
+				int	n = 0;
+				for (int k = NUM_BINS - 1; k > 0; k--)
+				{
+					growBox(box, binBounds, 6 * k);
+					n += binCount[k];
+					rightCost[k] = n * getArea(box);
+				}
+				int	best = -1;
+				double	bestCost = Double.POSITIVE_INFINITY;
+				resetBox(box);
+				n = 0;
+				for (int k = 0; k < NUM_BINS - 1; k++)
+				{
+					growBox(box, binBounds, 6 * k);
+					n += binCount[k];
+					double	cost = n * getArea(box) + rightCost[k + 1];
+					if (n > 0 && n < to - from && cost < bestCost)
+					{
+						best = k;
+						bestCost = cost;
+					}
+				}
+				
+				// Costs relative to intersecting every primitive of a leaf
+				double	area = getArea(node.bounds);
+				if (best < 0 || (to - from <= MAX_LEAF_SIZE_SAH && area > 0 && 1 + bestCost / area >= to - from))
+				{
+					return (best < 0 && to - from > MAX_LEAF_SIZE_SAH ? (from + to) >>> 1 : -1);
+				}
+				
+				// Moves the primitives left of the plane to the front of the range
+				int	i = from, j = to - 1;
+				while (i <= j)
+				{
+					if (getBin(order[i], axis, lo, scale) <= best)
+					{
+						i++;
+					}
+					else
+					{
+						int	p = order[i];
+						order[i] = order[j];
+						order[j--] = p;
+					}
+				}
+				return i;
+			}
+			
+			private int	getBin(int p, int axis, double lo, double scale)
+			{
+				return Math.min(NUM_BINS - 1, (int) ((centroid[3 * p + axis] - lo) * scale));
+			}
+		}
+		
+		private void	resetBox(double[] box)
+		{
+			Arrays.fill(box, 0, 3, Double.POSITIVE_INFINITY);
+			Arrays.fill(box, 3, 6, Double.NEGATIVE_INFINITY);
+		}
+		
+		private void	growBox(double[] box, double[] b, int i)
+		{
+			for (int a = 0; a < 3; a++)
+			{
+				box[a] = Math.min(box[a], b[i + a]);
+				box[a + 3] = Math.max(box[a + 3], b[i + a + 3]);
+			}
+		}
+		
+		private double	getArea(double[] box)
+		// Returns half the surface area of the box (0 if empty)
+		{
+			double	ex = box[3] - box[0], ey = box[4] - box[1], ez = box[5] - box[2];
+			return (ex >= 0 && ey >= 0 && ez >= 0 ? ex * ey + ey * ez + ez * ex : 0);
+		}
+	}
+}
\ No newline at end of file
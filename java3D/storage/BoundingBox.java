@@ -0,0 +1,111 @@
+/* ------------------------------------------------------------
+   About:      Bounding box class
+               Stores the axis-aligned 3D bounds of an object.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+public class	BoundingBox
+{
+	private double	minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+	private double	maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+	
+	
+	/* Constructors
+	---------------------------------------------------------------------- */
+	public	BoundingBox()
+	// Creates an empty box
+	{}
+	
+	public	BoundingBox(BoundingBox box)
+	{
+		add(box);
+	}
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public boolean	isEmpty()
+	{
+		return !(minX <= maxX && minY <= maxY && minZ <= maxZ);
+	}
+	
+	public Point3D	getMin()
+	{
+		return new Point3D(minX, minY, minZ);
+	}
+	
+	public Point3D	getMax()
+	{
+		return new Point3D(maxX, maxY, maxZ);
+	}
+	
+	public Point3D	getCorner(int corner)
+	// Returns one of the 8 corners, selected by bit 0 (X), bit 1 (Y) and bit 2 (Z) of the corner number
+	{
+		return new Point3D(((corner & 1) == 0 ? minX : maxX), 
+		                   ((corner & 2) == 0 ? minY : maxY), 
+		                   ((corner & 4) == 0 ? minZ : maxZ));
+	}
+	
+	public Point3D	getCenter()
+	{
+		return new Point3D((minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2);
+	}
+	
+	public double	getMaxRange()
+	// Returns the size of the greatest range (0 if empty)
+	{
+		if (isEmpty())
+		{
+			return 0;
+		}
+		return Math.max( maxX - minX , Math.max( maxY - minY , maxZ - minZ ));
+	}
+	
+	public void	add(double x, double y, double z)
+	// Grows the box to contain the given point
+	{
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		minZ = Math.min(minZ, z);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		maxZ = Math.max(maxZ, z);
+	}
+	
+	public void	add(BoundingBox box)
+	// Grows the box to contain the given box
+	{
+		if (!box.isEmpty())
+		{
+			add(box.minX, box.minY, box.minZ);
+			add(box.maxX, box.maxY, box.maxZ);
+		}
+	}
+	
+	public boolean	equals(Object object)
+	{
+		if (object instanceof BoundingBox)
+		{
+			BoundingBox	box = (BoundingBox) object;
+			return minX == box.minX && minY == box.minY && minZ == box.minZ && 
+			       maxX == box.maxX && maxY == box.maxY && maxZ == box.maxZ;
+		}
+		return false;
+	}
+	
+	public int	hashCode()
+	{
+		return java.util.Arrays.hashCode(new double[] { minX, minY, minZ, maxX, maxY, maxZ });
+	}
+	
+	public String	toString()
+	{
+		return new String("Min: " + getMin() + ", Max: " + getMax());
+	}
+}
\ No newline at end of file
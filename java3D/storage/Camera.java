@@ -25,8 +25,14 @@ public class	Camera
 	public Projector	isometricProjector, perspectiveProjector;		// Cached projectors for public use
 	private Projector	projector;		// Current projector
 	private RenderQuality	quality;
+	private boolean	isBSPSorted;		// Orders mesh triangles with BSP trees instead of by distance
+	private boolean	isBackFaceCulled;		// Skips mesh triangles that face away from the camera
 	
-	public enum	RenderQuality { Low, Med, High }
+	private Dimension	viewportSize;		// Size of the drawing surface, in pixels
+	
+	public enum	RenderQuality { Low, Med, High, ZBuffer }
+	
+	private volatile ViewTransform	view;		// Cached view matrix, cleared whenever the view changes
 	
 	// Perspective settings
 	private double	extentsMaxRange;
@@ -51,6 +57,9 @@ public class	Camera
 		perspectiveProjector = new PerspectiveProjector();
 		projector    = perspectiveProjector;
 		quality      = RenderQuality.Med;
+		isBSPSorted  = false;
+		isBackFaceCulled = false;
+		viewportSize = new Dimension();
 		
 		// Perspective settings
 		extentsMaxRange = 1;
@@ -101,6 +110,21 @@ public class	Camera
 		return quality;
 	}
 	
+	public boolean	isBSPSorted()
+	{
+		return isBSPSorted;
+	}
+	
+	public boolean	isBackFaceCulled()
+	{
+		return isBackFaceCulled;
+	}
+	
+	public Dimension	getViewportSize()
+	{
+		return new Dimension(viewportSize);
+	}
+	
 	public double	getExtentsMaxRange()
 	{
 		return extentsMaxRange;
@@ -116,6 +140,17 @@ public class	Camera
 		return perspectiveUnit;
 	}
 	
+	public ViewTransform	getViewTransform()
+	// Returns the view matrix, rebuilding it only if the view has changed
+	{
+		ViewTransform	view = this.view;
+		if (view == null)
+		{
+			view = this.view = new ViewTransform(this);
+		}
+		return view;
+	}
+	
 	public Point3D	getCameraLocation()
 	{
 		return getCameraLocation(rotateRadius);
@@ -161,6 +196,7 @@ public class	Camera
 		
 		this.viewAngles.set(viewAngles);
 		simplifyViewAngles();
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -171,6 +207,7 @@ public class	Camera
 		holdUpdates(true);
 		
 		this.zoom = zoom;
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -199,44 +236,40 @@ public class	Camera
 		Point2D	diff = (Point2D) screenOrigin.getDifference(pt);
 		diff.setProduct(zoom / this.zoom);
 		screenOrigin.set( pt.getSum(diff) );
-		setZoom(zoom);
+		setZoom(zoom);		// Also clears the view matrix
 		
 		holdUpdates(false);
 	}
 	
 	public void	setZoomTo(GraphicObject object, Rectangle rect)
 	// Zooms so that the object is centered in and fills the given rectangle
-	// TODO: Review process
+	// The object is measured by the screen size of its bounding box, which scales linearly with the zoom
 	{
 		holdUpdates(true);
 		
-		// Finds the screen size of the rendered object
-		java3D.render.Renderer	R = new java3D.render.Renderer();
-		GraphicObject	rendered;
-		double	objectRange = 0;
-		for (int i = 0; i < 5; i++)		// Capped to prevent endless looping
+		// Finds the screen size of the projected bounding box corners
+		BoundingBox	bounds = object.getBounds();
+		double	minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double	minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double[]	screen = new double[2];
+		for (int corner = 0; corner < 8 && !bounds.isEmpty(); corner++)
 		{
-			// Renders the object offline
-			rendered = R.render(object, this);
-			objectRange = rendered.getExtentsMaxRange();
-			
-			// Object is visible at current zoom
-			if (objectRange > 1)
-			{
-				break;
-			}
-			
-			// Zoom is too low to see object
-			else
-			{
-				zoom *= 100;
-			}
+			Point3D	p = bounds.getCorner(corner);
+			projector.project3DtoScreen(p.getX(), p.getY(), p.getZ(), this, screen);
+			minX = Math.min(minX, screen[0]);
+			maxX = Math.max(maxX, screen[0]);
+			minY = Math.min(minY, screen[1]);
+			maxY = Math.max(maxY, screen[1]);
 		}
+		double	objectRange = Math.max(maxX - minX, maxY - minY);
 		
 		// Computes and applies the rectangle-tailored zoom
-		double	screenRange = Math.min(rect.width, rect.height);
-		double	newZoom = zoom * (screenRange / objectRange);
-		setZoom(newZoom);
+		if (objectRange > 0)
+		{
+			double	screenRange = Math.min(rect.width, rect.height);
+			double	newZoom = zoom * (screenRange / objectRange);
+			setZoom(newZoom);
+		}
 		
 		// Centers the object on the middle of the rectangle
 		Point2D	center = new Point2D(rect.x+rect.width/2, rect.y+rect.height/2);
@@ -250,6 +283,7 @@ public class	Camera
 		holdUpdates(true);
 		
 		this.rotateOrigin.set(rotateOrigin);
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -259,6 +293,7 @@ public class	Camera
 		holdUpdates(true);
 		
 		this.screenOrigin.set(screenOrigin);
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -290,11 +325,42 @@ public class	Camera
 		holdUpdates(false);
 	}
 	
+	public void	setBSPSorted(boolean isBSPSorted)
+	// Med and High quality order mesh triangles by walking BSP trees, which are built in the background
+	{
+		holdUpdates(true);
+		
+		this.isBSPSorted = isBSPSorted;
+		
+		holdUpdates(false);
+	}
+	
+	public void	setBackFaceCulled(boolean isBackFaceCulled)
+	// Triangles whose facet normals point away from the camera are not drawn (for closed solids)
+	{
+		holdUpdates(true);
+		
+		this.isBackFaceCulled = isBackFaceCulled;
+		
+		holdUpdates(false);
+	}
+	
+	public void	setViewportSize(Dimension viewportSize)
+	// ZBuffer quality rasterizes into an image of this size
+	{
+		holdUpdates(true);
+		
+		this.viewportSize = new Dimension(viewportSize);
+		
+		holdUpdates(false);
+	}
+	
 	public void	setExtentsMaxRange(double extentsMaxRange)
 	{
 		holdUpdates(true);
 		
 		this.extentsMaxRange = extentsMaxRange;
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -304,6 +370,7 @@ public class	Camera
 		holdUpdates(true);
 		
 		this.rangeMultiplier = rangeMultiplier;
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -313,6 +380,7 @@ public class	Camera
 		holdUpdates(true);
 		
 		this.perspectiveUnit = perspectiveUnit;
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -327,6 +395,9 @@ public class	Camera
 		setScreenOrigin(cam.screenOrigin);
 		setRotateRadius(cam.rotateRadius);
 		setRenderQuality(cam.quality);
+		setBSPSorted(cam.isBSPSorted);
+		setBackFaceCulled(cam.isBackFaceCulled);
+		setViewportSize(cam.viewportSize);
 		setExtentsMaxRange(cam.extentsMaxRange);
 		setRangeMultiplier(cam.rangeMultiplier);
 		setPerspectiveUnit(cam.perspectiveUnit);
@@ -343,6 +414,7 @@ public class	Camera
 		viewAngles.setX( getSimplifiedAngle(viewAngles.getX()) );
 		viewAngles.setY( getSimplifiedAngle(viewAngles.getY()) );
 		viewAngles.setZ( getSimplifiedAngle(viewAngles.getZ()) );
+		view = null;
 		
 		holdUpdates(false);
 	}
@@ -473,6 +545,12 @@ public class	Camera
 	}
 	
 	public void	paint(Graphics g)
+	{
+		paint(g, new String[0]);
+	}
+	
+	public void	paint(Graphics g, String... details)
+	// Draws the camera settings, followed by the given lines of renderer details
 	{
 		java.awt.Point	textPoint = new java.awt.Point(10, 0);
 		int	lineSpacing = 20;
@@ -501,5 +579,11 @@ public class	Camera
 			f.format("%.3f %%", zoom * 100.0);
 		}
 		g.drawString("Zoom: " + f, textPoint.x, textPoint.y += lineSpacing);
+		
+		// Renderer details
+		for (String detail : details)
+		{
+			g.drawString(detail, textPoint.x, textPoint.y += lineSpacing);
+		}
 	}
 }
\ No newline at end of file
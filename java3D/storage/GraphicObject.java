@@ -20,18 +20,21 @@ public interface	GraphicObject
 	void	setAll(GraphicObject object);		// Replaces object AND attributes
 	GraphicObject	clone();
 	
-	// Attributes
-	Attributes	getAttr();
-	void	setAttr(Attributes attr);
+	// Attributes (objects without their own attributes inherit those of their parent group)
+	Attributes	getAttr();		// Returns the (shared, immutable) attributes, the defaults if none are set
+	Attributes	getAttr(Attributes inherited);		// Returns the attributes, or the inherited ones if none are set
+	void	setAttr(Attributes attr);		// Null removes the attributes, which are then inherited
 	void	setAttrToAll(Attributes attr);
 	
 	// Extents
 	Point	getExtents(Comparator<Double> comp);
 	double	getExtentsMaxRange();
+	BoundingBox	getBounds();		// Returns the 3D bounds (2D points lie at Z = 0)
 	
 	// Rendering
 	Point	getCenter();
 	GraphicObject	render(Camera camera);
+	GraphicObject	render(Camera camera, Attributes inherited);		// Renders with the inherited attributes wherever none are set
 	void	paint(Graphics g);
 	
 	// Mathematics
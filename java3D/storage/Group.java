@@ -16,7 +16,12 @@ import java.util.*;
 public class	Group implements GraphicObject
 {
 	protected java.util.Vector<GraphicObject>	objects = new java.util.Vector<GraphicObject>();
-	protected Attributes	attr;		// Initially unassigned for efficiency
+	protected Attributes	attr;		// Unassigned while inherited from the parent group
+	
+	// Bounds and sum of the object centers, computed on first use and then kept up to date by add
+	// Unassigned while unknown, so groups that are never measured (e.g. rendered polygons) never compute them
+	private BoundingBox	bounds;
+	private Point3D	centerSum;
 	
 	// Event handling
 	private java.util.List<GroupListener>	listeners;		// Initially unassigned for efficiency
@@ -60,7 +65,16 @@ public class	Group implements GraphicObject
 		
 		for (GraphicObject obj : objects)
 		{
-			this.objects.add(obj.clone());
+			GraphicObject	clone = obj.clone();
+			this.objects.add(clone);
+			if (bounds != null)
+			{
+				addBounds(bounds, clone);
+			}
+			if (centerSum != null)
+			{
+				centerSum.setSum(clone.getCenter());
+			}
 		}
 		
 		holdUpdates(false);
@@ -75,13 +89,13 @@ public class	Group implements GraphicObject
 	public void	set(GraphicObject object)
 	// Replaces the current objects ONLY
 	{
-		set(object, getAttr());
+		set(object, getAttr(null));
 	}
 	
 	public void	setAll(GraphicObject object)
 	// Replaces the current objects AND attributes
 	{
-		set(object, object.getAttr());
+		set(object, object.getAttr(null));
 	}
 	
 	public void	set(GraphicObject object, Attributes attr)
@@ -138,6 +152,8 @@ public class	Group implements GraphicObject
 		holdUpdates(true);
 		
 		objects.clear();
+		bounds = null;
+		centerSum = null;
 		
 		holdUpdates(false);
 	}
@@ -154,6 +170,13 @@ public class	Group implements GraphicObject
 		return new java.util.Vector<GraphicObject>(objects);
 	}
 	
+	public java.util.List<GraphicObject>	getView()
+	// Returns a read-only view of the objects (no copies are made)
+	// Callers must treat the viewed objects as immutable
+	{
+		return Collections.unmodifiableList(objects);
+	}
+	
 	public GraphicObject	clone()
 	{
 		return new Group(this);
@@ -180,16 +203,20 @@ public class	Group implements GraphicObject
 	---------------------------------------------------------------------- */
 	public Attributes	getAttr()
 	{
-		allocateAttr();
-		return attr.clone();
+		return (attr != null ? attr : Attributes.DEFAULT);
+	}
+	
+	public Attributes	getAttr(Attributes inherited)
+	{
+		return (attr != null ? attr : inherited);
 	}
 	
 	public void	setAttr(Attributes attr)
+	// Objects without their own attributes inherit these, so a change costs the same for any group size
 	{
 		holdUpdates(true);
 		
-		allocateAttr();
-		this.attr.set(attr);
+		this.attr = attr;
 		
 		holdUpdates(false, GroupUpdate.Attributes);
 	}
@@ -207,14 +234,6 @@ public class	Group implements GraphicObject
 		holdUpdates(false, GroupUpdate.Attributes);
 	}
 	
-	private void	allocateAttr()
-	{
-		if (attr == null)
-		{
-			attr = new Attributes();
-		}
-	}
-	
 	
 	/* Event handling
 	---------------------------------------------------------------------- */
@@ -289,35 +308,42 @@ public class	Group implements GraphicObject
 	public double	getExtentsMaxRange()
 	// Returns the size of the greatest extents range
 	{
-		Point3D	minExtents = new Point3D(getMinExtents());
-		Point3D	maxExtents = new Point3D(getMaxExtents());
-		return Math.max( maxExtents.getX() - minExtents.getX() , 
-		       Math.max( maxExtents.getY() - minExtents.getY() ,
-		                 maxExtents.getZ() - minExtents.getZ() ));
+		return getBounds().getMaxRange();
 	}
 	
-	private Point	getMinExtents()
-	// Returns the smallest value in each dimension as an ordered triple
+	public BoundingBox	getBounds()
+	// Returns the union of the object bounds
 	{
-		return getExtents(new Comparator<Double>()
+		if (bounds == null)
 		{
-			public int	compare(Double d1, Double d2)
+			BoundingBox	box = new BoundingBox();
+			for (GraphicObject obj : objects)
 			{
-				return (int) (d2 - d1);
+				addBounds(box, obj);
 			}
-		});
+			bounds = box;
+		}
+		return new BoundingBox(bounds);
 	}
 	
-	private Point	getMaxExtents()
-	// Returns the largest value in each dimension as an ordered triple
+	private static void	addBounds(BoundingBox box, GraphicObject obj)
+	// Grows the box by the object bounds (without allocating for points)
 	{
-		return getExtents(new Comparator<Double>()
+		if (obj instanceof Point3D)
 		{
-			public int	compare(Double d1, Double d2)
-			{
-				return (int) (d1 - d2);
-			}
-		});
+			Point3D	p = (Point3D) obj;
+			box.add(p.getX(), p.getY(), p.getZ());
+		}
+		else
+		if (obj instanceof Point2D)
+		{
+			Point2D	p = (Point2D) obj;
+			box.add(p.getX(), p.getY(), 0);
+		}
+		else
+		{
+			box.add(obj.getBounds());
+		}
 	}
 	
 	public Point	getExtents(Comparator<Double> comp)
@@ -367,28 +393,38 @@ public class	Group implements GraphicObject
 	/* Rendering
 	---------------------------------------------------------------------- */
 	public Point	getCenter()
-	// Returns the geometric center point of the group
+	// Returns the geometric center point of the group (the mean of the object centers)
 	{
 		if (objects.size() > 0)
 		{
-			Point3D	center = new Point3D();
-			for (GraphicObject obj : objects)
+			if (centerSum == null)
 			{
-				center.setSum(obj.getCenter());
+				Point3D	sum = new Point3D();
+				for (GraphicObject obj : objects)
+				{
+					sum.setSum(obj.getCenter());
+				}
+				centerSum = sum;
 			}
-			return (Point) center.getQuotient(objects.size());
+			return (Point) centerSum.getQuotient(objects.size());
 		}
 		return new Point3D();
 	}
 	
 	public GraphicObject	render(Camera camera)
 	{
+		return render(camera, null);
+	}
+	
+	public GraphicObject	render(Camera camera, Attributes inherited)
+	{
+		Attributes	resolved = getAttr(inherited);
 		Group	rendered = new Group();
 		for (GraphicObject obj : objects)
 		{
-			rendered.add(obj.render(camera));
+			rendered.add(obj.render(camera, resolved));
 		}
-		rendered.setAttr(getAttr());
+		rendered.setAttr(resolved != null ? resolved : Attributes.DEFAULT);
 		return rendered;
 	}
 	
@@ -413,22 +449,24 @@ public class	Group implements GraphicObject
 		// Draws the 2D screen polygon
 		if (polygon != null)
 		{
+			Attributes	attr = getAttr();
+			
 			// Draws filled polygon
-			if (getAttr().showFill)
+			if (attr.showFill)
 			{
-				g.setColor(getAttr().getFillColor());
+				g.setColor(attr.getFillColor());
 				g.fillPolygon(polygon);
 			}
 			
 			// Draws unfilled polygon
-			if (getAttr().showEdges)
+			if (attr.showEdges)
 			{
-				g.setColor(getAttr().getEdgeColor());
+				g.setColor(attr.getEdgeColor());
 				g.drawPolygon(polygon);
 			}
 			
 			// Draws polygon vertices
-			if (getAttr().showPoints)
+			if (attr.showPoints)
 			{
 				for (GraphicObject obj : objects)
 				{
@@ -454,6 +492,8 @@ public class	Group implements GraphicObject
 		{
 			obj.rotate(angles, origin);
 		}
+		bounds = null;
+		centerSum = null;
 		
 		holdUpdates(false);
 	}
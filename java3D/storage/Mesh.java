@@ -0,0 +1,753 @@
+/* ------------------------------------------------------------
+   About:      Mesh class
+               Abstract base class for primitives stored as packed
+               coordinate and index arrays.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+import java.awt.Graphics;
+import java.util.*;
+import java.util.concurrent.*;
+
+public abstract class	Mesh implements GraphicObject
+{
+	// Vertex coordinates (struct-of-arrays)
+	protected double[]	x = new double[0], y = new double[0], z = new double[0];
+	protected int	numVertices = 0;
+	
+	// Primitive vertex indices, getPrimitiveSize() per primitive
+	// Unassigned for unindexed meshes, where consecutive vertices form the primitives
+	protected int[]	indices;
+	protected int	numIndices = 0;
+	
+	protected Attributes	attr;		// Shared by all primitives, unassigned while inherited from the parent group
+	
+	private boolean	isShared = false;		// Arrays are shared with a copy (copy-on-write)
+	private volatile int	modCount = 0;		// Changes whenever the vertices or primitives change
+	
+	// Cached vertex bounds and mean of the primitive centers, valid while its modCount matches modCount
+	// Published as one immutable snapshot, as background threads (e.g. BSP tree builders) measure too
+	private volatile Measurement	measured;
+	private static final int	PARALLEL_SIZE = 1 << 16;		// Smallest mesh (in vertices) measured in parallel
+	
+	// Cached unique edges (vertex index pairs, lower index first) and the edge along each primitive side,
+	// valid while edgeModCount matches modCount
+	private int[]	edges;
+	private int[]	sideEdges;
+	private int	numEdges;
+	private int	edgeModCount;
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public abstract int	getPrimitiveSize();		// Returns the number of vertices per primitive
+	
+	public int	size()
+	// Returns the number of primitives in the mesh
+	{
+		return (indices == null ? numVertices : numIndices) / getPrimitiveSize();
+	}
+	
+	public int	getNumVertices()
+	// Returns the number of (unique, if indexed) vertices in the mesh
+	{
+		return numVertices;
+	}
+	
+	public boolean	isIndexed()
+	{
+		return indices != null;
+	}
+	
+	public int	getModCount()
+	// Returns a counter that changes whenever the vertices or primitives change
+	{
+		return modCount;
+	}
+	
+	public double	getX(int vertex)
+	{
+		return x[vertex];
+	}
+	
+	public double	getY(int vertex)
+	{
+		return y[vertex];
+	}
+	
+	public double	getZ(int vertex)
+	{
+		return z[vertex];
+	}
+	
+	public double[]	getXCoordinates()
+	// Returns the X coordinate array for bulk reads (shared, do not modify)
+	// Only the first getNumVertices() elements are valid
+	{
+		return x;
+	}
+	
+	public double[]	getYCoordinates()
+	// Returns the Y coordinate array for bulk reads (shared, do not modify)
+	{
+		return y;
+	}
+	
+	public double[]	getZCoordinates()
+	// Returns the Z coordinate array for bulk reads (shared, do not modify)
+	{
+		return z;
+	}
+	
+	public int	getVertexIndex(int primitive, int corner)
+	// Returns the vertex index of the given corner of the given primitive
+	{
+		int	i = getPrimitiveSize() * primitive + corner;
+		return (indices == null ? i : indices[i]);
+	}
+	
+	public int	getNumEdges()
+	// Returns the number of unique edges, which are listed once per modification
+	// Primitives only share edges by vertex index, i.e. in indexed (e.g. welded) meshes
+	{
+		listEdges();
+		return numEdges;
+	}
+	
+	public int	getEdgeVertex(int edge, int end)
+	// Returns the vertex index of the given end (0 or 1) of the given unique edge
+	{
+		listEdges();
+		return edges[2 * edge + end];
+	}
+	
+	public int	getSideEdge(int primitive, int side)
+	// Returns the unique edge from the given corner of the given primitive to the next corner
+	{
+		listEdges();
+		return sideEdges[getPrimitiveSize() * primitive + side];
+	}
+	
+	public Point3D	getVertex(int primitive, int corner)
+	// Returns a copy of the given corner of the given primitive
+	{
+		int	v = getVertexIndex(primitive, corner);
+		return new Point3D(x[v], y[v], z[v]);
+	}
+	
+	public Group	getPrimitive(int primitive)
+	// Returns a copy of the given primitive as a polygon group
+	{
+		Group	polygon = new Group();
+		for (int corner = 0; corner < getPrimitiveSize(); corner++)
+		{
+			polygon.add(getVertex(primitive, corner));
+		}
+		polygon.setAttr(getAttr(null));
+		return polygon;
+	}
+	
+	public int	addVertex(double x, double y, double z)
+	// Appends a vertex and returns its index
+	// Until primitives are added by index, consecutive vertices form the primitives
+	{
+		unshare();
+		if (numVertices == this.x.length)
+		{
+			resizeVertices(Math.max(48, 2 * numVertices));
+		}
+		this.x[numVertices] = x;
+		this.y[numVertices] = y;
+		this.z[numVertices] = z;
+		return numVertices++;
+	}
+	
+	protected void	addIndex(int vertex)
+	// Appends a primitive vertex index
+	{
+		unshare();
+		if (indices == null)
+		{
+			indexVertices();
+		}
+		if (numIndices == indices.length)
+		{
+			resizeIndices(Math.max(48, 2 * numIndices));
+		}
+		indices[numIndices++] = vertex;
+	}
+	
+	public void	trimToSize()
+	// Releases unused coordinate and index storage
+	{
+		if (numVertices < x.length)
+		{
+			resizeVertices(numVertices);
+		}
+		if (indices != null && numIndices < indices.length)
+		{
+			resizeIndices(numIndices);
+		}
+	}
+	
+	public int	weld(double epsilon)
+	// Merges vertices that fall into the same epsilon-sized grid cell (only exact duplicates
+	// if epsilon is 0), converting the mesh to an indexed mesh
+	// Returns the number of vertices merged
+	{
+		unshare();
+		if (indices == null)
+		{
+			indexVertices();
+		}
+		
+		// Hashes the quantized coordinates of each unique vertex (open addressing)
+		int[]	table = new int[Integer.highestOneBit(Math.max(1, numVertices)) << 2];		// Unique index + 1
+		int[]	remap = new int[numVertices];
+		int	numUnique = 0;
+		int	mask = table.length - 1;
+		for (int v = 0; v < numVertices; v++)
+		{
+			long	qx = quantize(x[v], epsilon);
+			long	qy = quantize(y[v], epsilon);
+			long	qz = quantize(z[v], epsilon);
+			long	hash = qx * 0x9E3779B97F4A7C15L ^ qy * 0xC2B2AE3D27D4EB4FL ^ qz * 0x165667B19E3779F9L;
+			int	slot = (int) (hash ^ (hash >>> 32)) & mask;
+			
+			while (true)
+			{
+				int	u = table[slot] - 1;
+				if (u < 0)
+				// New vertex, compacted in place
+				{
+					x[numUnique] = x[v];
+					y[numUnique] = y[v];
+					z[numUnique] = z[v];
+					table[slot] = numUnique + 1;
+					remap[v] = numUnique++;
+					break;
+				}
+				if (quantize(x[u], epsilon) == qx && 
+				    quantize(y[u], epsilon) == qy && 
+				    quantize(z[u], epsilon) == qz)
+				// Duplicate vertex
+				{
+					remap[v] = u;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		
+		// Redirects the primitives to the unique vertices
+		for (int i = 0; i < numIndices; i++)
+		{
+			indices[i] = remap[indices[i]];
+		}
+		
+		int	numMerged = numVertices - numUnique;
+		numVertices = numUnique;
+		trimToSize();
+		return numMerged;
+	}
+	
+	private void	listEdges()
+	// Lists each vertex index pair joined by a primitive side once, if modified since last listed
+	{
+		if (edges != null && edgeModCount == modCount)
+		{
+			return;
+		}
+		
+		// Hashes the vertex index pairs of each primitive side (open addressing)
+		int	n = getPrimitiveSize();
+		int	numSides = n * size();
+		int[]	pairs = new int[2 * numSides];
+		int[]	sides = new int[numSides];
+		int[]	table = new int[Integer.highestOneBit(Math.max(1, numSides)) << 2];		// Unique edge + 1
+		int	mask = table.length - 1;
+		int	numUnique = 0;
+		for (int i = 0; i < numSides; i++)
+		{
+			int	v0 = getVertexIndex(i / n, i % n);
+			int	v1 = getVertexIndex(i / n, (i + 1) % n);
+			int	lo = Math.min(v0, v1), hi = Math.max(v0, v1);
+			long	hash = (((long) lo << 32) | hi) * 0x9E3779B97F4A7C15L;
+			int	slot = (int) (hash >>> 32) & mask;
+			
+			while (true)
+			{
+				int	e = table[slot] - 1;
+				if (e < 0)
+				// New edge
+				{
+					pairs[2 * numUnique] = lo;
+					pairs[2 * numUnique + 1] = hi;
+					table[slot] = numUnique + 1;
+					sides[i] = numUnique++;
+					break;
+				}
+				if (pairs[2 * e] == lo && pairs[2 * e + 1] == hi)
+				// Shared edge
+				{
+					sides[i] = e;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		
+		edges = Arrays.copyOf(pairs, 2 * numUnique);
+		sideEdges = sides;
+		numEdges = numUnique;
+		edgeModCount = modCount;
+	}
+	
+	private static long	quantize(double value, double epsilon)
+	// Returns the grid cell containing the value
+	{
+		if (epsilon > 0)
+		{
+			return (long) Math.floor(value / epsilon);
+		}
+		return Double.doubleToLongBits(value + 0.0);		// Treats -0.0 as 0.0
+	}
+	
+	public void	set(GraphicObject object)
+	// Replaces the current primitives ONLY
+	{
+		set(object, getAttr(null));
+	}
+	
+	public void	setAll(GraphicObject object)
+	// Replaces the current primitives AND attributes
+	{
+		set(object, object.getAttr(null));
+	}
+	
+	public void	set(GraphicObject object, Attributes attr)
+	// Replaces the current primitives AND attributes
+	{
+		if (object.getClass() == getClass())
+		{
+			Mesh	mesh = (Mesh) object;
+			x = mesh.x;
+			y = mesh.y;
+			z = mesh.z;
+			numVertices = mesh.numVertices;
+			indices = mesh.indices;
+			numIndices = mesh.numIndices;
+			isShared = mesh.isShared = true;
+			modCount++;
+			Measurement	m = mesh.measured;
+			if (m != null && m.modCount == mesh.modCount)
+			// Shares the cached measurements along with the vertices
+			{
+				measured = new Measurement(m.bounds, m.center, modCount);
+			}
+			if (mesh.edges != null && mesh.edgeModCount == mesh.modCount)
+			// Shares the unique edges as well
+			{
+				edges = mesh.edges;
+				sideEdges = mesh.sideEdges;
+				numEdges = mesh.numEdges;
+				edgeModCount = modCount;
+			}
+			setAttr(attr);
+		}
+	}
+	
+	public abstract GraphicObject	clone();		// Returns a copy that shares the arrays until either is modified
+	
+	private void	resizeVertices(int length)
+	{
+		x = Arrays.copyOf(x, length);
+		y = Arrays.copyOf(y, length);
+		z = Arrays.copyOf(z, length);
+	}
+	
+	private void	resizeIndices(int length)
+	{
+		indices = Arrays.copyOf(indices, length);
+	}
+	
+	private void	indexVertices()
+	// Converts an unindexed mesh to an indexed mesh
+	{
+		numIndices = numVertices - numVertices % getPrimitiveSize();
+		indices = new int[numIndices];
+		for (int i = 0; i < numIndices; i++)
+		{
+			indices[i] = i;
+		}
+	}
+	
+	private void	unshare()
+	// Copies the arrays before they are modified (called before every modification)
+	{
+		modCount++;
+		if (isShared)
+		{
+			resizeVertices(numVertices);
+			if (indices != null)
+			{
+				resizeIndices(numIndices);
+			}
+			isShared = false;
+		}
+	}
+	
+	
+	/* Attributes
+	---------------------------------------------------------------------- */
+	public Attributes	getAttr()
+	{
+		return (attr != null ? attr : Attributes.DEFAULT);
+	}
+	
+	public Attributes	getAttr(Attributes inherited)
+	{
+		return (attr != null ? attr : inherited);
+	}
+	
+	public void	setAttr(Attributes attr)
+	{
+		this.attr = attr;
+	}
+	
+	public void	setAttrToAll(Attributes attr)
+	{
+		setAttr(attr);
+	}
+	
+	
+	/* Extents
+	---------------------------------------------------------------------- */
+	public Point	getExtents(Comparator<Double> comp)
+	{
+		Point3D	extents = new Point3D();
+		if (numVertices > 0)
+		{
+			extents.set(x[0], y[0], z[0]);
+		}
+		
+		for (int v = 1; v < numVertices; v++)
+		{
+			if (comp.compare(x[v], extents.getX()) > 0)
+			{
+				extents.setX(x[v]);
+			}
+			if (comp.compare(y[v], extents.getY()) > 0)
+			{
+				extents.setY(y[v]);
+			}
+			if (comp.compare(z[v], extents.getZ()) > 0)
+			{
+				extents.setZ(z[v]);
+			}
+		}
+		
+		return extents;
+	}
+	
+	public double	getExtentsMaxRange()
+	// Returns the size of the greatest extents range
+	{
+		return getBounds().getMaxRange();
+	}
+	
+	public BoundingBox	getBounds()
+	// Returns the vertex bounds, measured once per modification
+	{
+		return new BoundingBox(measure().bounds);
+	}
+	
+	private Measurement	measure()
+	// Measures the bounds and the mean of the primitive centers together, if modified since last measured
+	{
+		Measurement	m = measured;
+		int	count = modCount;
+		if (m != null && m.modCount == count)
+		{
+			return m;
+		}
+		
+		Reduction	reduction = new Reduction(this, 0, Math.max(numVertices, getPrimitiveSize() * size()));
+		if (numVertices >= PARALLEL_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1)
+		{
+			ForkJoinPool.commonPool().invoke(reduction);
+		}
+		else
+		{
+			reduction.reduce();
+		}
+		
+		BoundingBox	box = new BoundingBox();
+		Point3D	mean = new Point3D();
+		if (numVertices > 0)
+		{
+			box.add(reduction.minX, reduction.minY, reduction.minZ);
+			box.add(reduction.maxX, reduction.maxY, reduction.maxZ);
+		}
+		int	numCorners = getPrimitiveSize() * size();
+		if (numCorners > 0)
+		{
+			mean.set(reduction.sumX / numCorners, reduction.sumY / numCorners, reduction.sumZ / numCorners);
+		}
+		m = new Measurement(box, mean, count);
+		measured = m;
+		return m;
+	}
+	
+	private static class	Measurement
+	// Vertex bounds and mean of the primitive centers as of the given modification (never modified)
+	{
+		public final BoundingBox	bounds;
+		public final Point3D	center;
+		public final int	modCount;
+		
+		public	Measurement(BoundingBox bounds, Point3D center, int modCount)
+		{
+			this.bounds = bounds;
+			this.center = center;
+			this.modCount = modCount;
+		}
+	}
+	
+	private static class	Reduction extends RecursiveAction
+	// Single pass over the vertices (for the bounds) and primitive corners (for the center sum) from (inclusive) to (exclusive)
+	// Ranges are always halved down to the same grain, so the sums do not depend on the number of threads
+	{
+		private static final long	serialVersionUID = 1L;
+		private static final int	GRAIN = 1 << 13;
+		
+		private Mesh	mesh;
+		private int	from, to;
+		public double	minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		public double	maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		public double	sumX = 0, sumY = 0, sumZ = 0;
+		
+		public	Reduction(Mesh mesh, int from, int to)
+		{
+			this.mesh = mesh;
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected void	compute()
+		// Reduces the halves concurrently
+		{
+			if (to - from <= GRAIN)
+			{
+				reduceRange();
+			}
+			else
+			{
+				int	mid = (from + to) >>> 1;
+				Reduction	left = new Reduction(mesh, from, mid), right = new Reduction(mesh, mid, to);
+				invokeAll(left, right);
+				merge(left, right);
+			}
+		}
+		
+		public void	reduce()
+		// Reduces the halves in turn
+		{
+			if (to - from <= GRAIN)
+			{
+				reduceRange();
+			}
+			else
+			{
+				int	mid = (from + to) >>> 1;
+				Reduction	left = new Reduction(mesh, from, mid), right = new Reduction(mesh, mid, to);
+				left.reduce();
+				right.reduce();
+				merge(left, right);
+			}
+		}
+		
+		private void	reduceRange()
+		{
+			double[]	x = mesh.x, y = mesh.y, z = mesh.z;
+			int[]	indices = mesh.indices;
+			int	numVertices = mesh.numVertices;
+			int	numCorners = mesh.getPrimitiveSize() * mesh.size();
+			for (int i = from; i < to; i++)
+			{
+				if (i < numVertices)
+				{
+					double	px = x[i], py = y[i], pz = z[i];
+					minX = (px < minX ? px : minX);
+					minY = (py < minY ? py : minY);
+					minZ = (pz < minZ ? pz : minZ);
+					maxX = (px > maxX ? px : maxX);
+					maxY = (py > maxY ? py : maxY);
+					maxZ = (pz > maxZ ? pz : maxZ);
+				}
+				if (i < numCorners)
+				{
+					int	v = (indices == null ? i : indices[i]);
+					sumX += x[v];
+					sumY += y[v];
+					sumZ += z[v];
+				}
+			}
+		}
+		
+		private void	merge(Reduction left, Reduction right)
+		{
+			minX = Math.min(left.minX, right.minX);
+			minY = Math.min(left.minY, right.minY);
+			minZ = Math.min(left.minZ, right.minZ);
+			maxX = Math.max(left.maxX, right.maxX);
+			maxY = Math.max(left.maxY, right.maxY);
+			maxZ = Math.max(left.maxZ, right.maxZ);
+			sumX = left.sumX + right.sumX;
+			sumY = left.sumY + right.sumY;
+			sumZ = left.sumZ + right.sumZ;
+		}
+	}
+	
+	
+	/* Rendering
+	---------------------------------------------------------------------- */
+	public Point	getCenter()
+	// Returns the mean of the primitive centers, measured once per modification
+	{
+		Point3D	center = measure().center;
+		return new Point3D(center.getX(), center.getY(), center.getZ());
+	}
+	
+	public Point3D	getCenter(int primitive)
+	// Returns the geometric center point of the given primitive
+	{
+		double	sumX = 0, sumY = 0, sumZ = 0;
+		int	n = getPrimitiveSize();
+		for (int corner = 0; corner < n; corner++)
+		{
+			int	v = getVertexIndex(primitive, corner);
+			sumX += x[v];
+			sumY += y[v];
+			sumZ += z[v];
+		}
+		return new Point3D(sumX / n, sumY / n, sumZ / n);
+	}
+	
+	public GraphicObject	render(Camera camera)
+	{
+		return render(camera, null);
+	}
+	
+	public GraphicObject	render(Camera camera, Attributes inherited)
+	{
+		Attributes	attr = getAttr(inherited);
+		if (attr == null)
+		{
+			attr = Attributes.DEFAULT;
+		}
+		
+		// Projects each vertex once
+		Point2D[]	projected = new Point2D[numVertices];
+		for (int v = 0; v < numVertices; v++)
+		{
+			Point3D	vertex = new Point3D(x[v], y[v], z[v]);
+			vertex.setAttr(attr);
+			projected[v] = (Point2D) vertex.render(camera);
+		}
+		
+		// Builds the primitives from the projected vertices
+		Group	rendered = new Group();
+		for (int i = 0; i < size(); i++)
+		{
+			Group	polygon = new Group();
+			for (int corner = 0; corner < getPrimitiveSize(); corner++)
+			{
+				polygon.add(projected[getVertexIndex(i, corner)]);
+			}
+			polygon.setAttr(attr);
+			rendered.add(polygon);
+		}
+		rendered.setAttr(attr);
+		return rendered;
+	}
+	
+	public void	paint(Graphics g)
+	{
+		System.err.println("Error! Mesh.paint() called by: " + toString());
+	}
+	
+	
+	/* Mathematics
+	---------------------------------------------------------------------- */
+	public void	rotate(Point angles)
+	{
+		rotate(angles, new Point3D());
+	}
+	
+	public void	rotate(Point angles, Point origin)
+	{
+		unshare();
+		
+		Point3D	vertex = new Point3D();
+		for (int v = 0; v < numVertices; v++)
+		{
+			vertex.set(x[v], y[v], z[v]);
+			vertex.rotate(angles, origin);
+			x[v] = vertex.getX();
+			y[v] = vertex.getY();
+			z[v] = vertex.getZ();
+		}
+	}
+	
+	public GraphicObject	getNegative()
+	{
+		return getProduct(-1);
+	}
+	
+	public GraphicObject	getProduct(double factor)
+	{
+		Mesh	mesh = (Mesh) clone();
+		mesh.setProduct(factor);
+		return mesh;
+	}
+	
+	public GraphicObject	getQuotient(double factor)
+	{
+		Mesh	mesh = (Mesh) clone();
+		mesh.setQuotient(factor);
+		return mesh;
+	}
+	
+	public void	setNegative()
+	{
+		setProduct(-1);
+	}
+	
+	public void	setProduct(double factor)
+	{
+		unshare();
+		for (int v = 0; v < numVertices; v++)
+		{
+			x[v] *= factor;
+			y[v] *= factor;
+			z[v] *= factor;
+		}
+	}
+	
+	public void	setQuotient(double factor)
+	{
+		unshare();
+		for (int v = 0; v < numVertices; v++)
+		{
+			x[v] /= factor;
+			y[v] /= factor;
+			z[v] /= factor;
+		}
+	}
+}
\ No newline at end of file
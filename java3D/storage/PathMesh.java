@@ -0,0 +1,52 @@
+/* ------------------------------------------------------------
+   About:      Path mesh class
+               Stores path segments as packed coordinate and index arrays.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+public class	PathMesh extends Mesh
+{
+	/* Constructors
+	---------------------------------------------------------------------- */
+	public	PathMesh()
+	// Paths are always indexed, as consecutive segments share their end points
+	{
+		indices = new int[0];
+	}
+	
+	public	PathMesh(GraphicObject object)
+	{
+		this();
+		setAll(object);
+	}
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public int	getPrimitiveSize()
+	{
+		return 2;
+	}
+	
+	public void	addSegment(int v0, int v1)
+	// Appends a segment between the given existing vertices
+	{
+		addIndex(v0);
+		addIndex(v1);
+	}
+	
+	public GraphicObject	clone()
+	{
+		return new PathMesh(this);
+	}
+	
+	public String	toString()
+	{
+		return new String("Segments: " + size() + ", Vertices: " + getNumVertices());
+	}
+}
\ No newline at end of file
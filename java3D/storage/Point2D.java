@@ -14,7 +14,7 @@ import java.util.*;
 public class	Point2D implements Point
 {
 	protected double	x=0, y=0;
-	protected Attributes	attr;		// Initially unassigned for efficiency
+	protected Attributes	attr;		// Unassigned while inherited from the parent group
 	
 	
 	/* Constructors
@@ -64,13 +64,13 @@ public class	Point2D implements Point
 	public void	set(GraphicObject object)
 	// Replaces the current point ONLY
 	{
-		set(object, getAttr());
+		set(object, getAttr(null));
 	}
 	
 	public void	setAll(GraphicObject object)
 	// Replaces the current point AND attributes
 	{
-		set(object, object.getAttr());
+		set(object, object.getAttr(null));
 	}
 	
 	public void	set(GraphicObject object, Attributes attr)
@@ -105,27 +105,22 @@ public class	Point2D implements Point
 	---------------------------------------------------------------------- */
 	public Attributes	getAttr()
 	{
-		allocateAttr();
-		return attr.clone();
+		return (attr != null ? attr : Attributes.DEFAULT);
 	}
 	
-	public void	setAttr(Attributes attr)
+	public Attributes	getAttr(Attributes inherited)
 	{
-		allocateAttr();
-		this.attr.set(attr);
+		return (attr != null ? attr : inherited);
 	}
 	
-	public void	setAttrToAll(Attributes attr)
+	public void	setAttr(Attributes attr)
 	{
-		setAttr(attr);
+		this.attr = attr;
 	}
 	
-	private void	allocateAttr()
+	public void	setAttrToAll(Attributes attr)
 	{
-		if (attr == null)
-		{
-			attr = new Attributes();
-		}
+		setAttr(attr);
 	}
 	
 	
@@ -141,6 +136,13 @@ public class	Point2D implements Point
 		return 0;
 	}
 	
+	public BoundingBox	getBounds()
+	{
+		BoundingBox	bounds = new BoundingBox();
+		bounds.add(x, y, 0);
+		return bounds;
+	}
+	
 	
 	/* Rendering
 	---------------------------------------------------------------------- */
@@ -154,6 +156,19 @@ public class	Point2D implements Point
 		return camera.render(this);
 	}
 	
+	public GraphicObject	render(Camera camera, Attributes inherited)
+	{
+		if (attr != null || inherited == null)
+		{
+			return render(camera);
+		}
+		
+		// Projects a copy with the inherited attributes
+		Point2D	p = (Point2D) clone();
+		p.setAttr(inherited);
+		return p.render(camera);
+	}
+	
 	public void	paint(Graphics g)
 	{
 		g.setColor(attr.getPointColor());
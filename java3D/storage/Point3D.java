@@ -90,6 +90,13 @@ public class	Point3D extends Point2D
 		return 0;
 	}
 	
+	public BoundingBox	getBounds()
+	{
+		BoundingBox	bounds = new BoundingBox();
+		bounds.add(x, y, z);
+		return bounds;
+	}
+	
 	
 	/* Rendering
 	---------------------------------------------------------------------- */
@@ -0,0 +1,195 @@
+/* ------------------------------------------------------------
+   About:      Triangle mesh class
+               Stores triangles as packed coordinate and index arrays.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+import java.util.*;
+
+public class	TriangleMesh extends Mesh
+{
+	// Facet normals, one per triangle (optional), shared with copies until either is modified
+	private double[]	nx = new double[0], ny = new double[0], nz = new double[0];
+	private int	numNormals = 0;
+	private boolean	areNormalsShared = false;
+	
+	
+	/* Constructors
+	---------------------------------------------------------------------- */
+	public	TriangleMesh()
+	{}
+	
+	public	TriangleMesh(GraphicObject object)
+	{
+		setAll(object);
+	}
+	
+	
+	/* Data access
+	---------------------------------------------------------------------- */
+	public int	getPrimitiveSize()
+	{
+		return 3;
+	}
+	
+	public Group	getTriangle(int triangle)
+	// Returns a copy of the given triangle as a polygon group
+	{
+		return getPrimitive(triangle);
+	}
+	
+	public void	addTriangle(int v0, int v1, int v2)
+	// Appends a triangle made of the given existing vertices
+	{
+		addIndex(v0);
+		addIndex(v1);
+		addIndex(v2);
+	}
+	
+	public boolean	hasNormals()
+	// Returns whether facet normals are stored for the triangles
+	{
+		return numNormals > 0;
+	}
+	
+	public void	addNormal(double x, double y, double z)
+	// Appends the facet normal of the next triangle (a zero normal stands for the winding normal)
+	{
+		unshareNormals();
+		if (numNormals == nx.length)
+		{
+			resizeNormals(Math.max(16, 2 * numNormals));
+		}
+		nx[numNormals] = x;
+		ny[numNormals] = y;
+		nz[numNormals] = z;
+		numNormals++;
+	}
+	
+	public void	getNormal(int triangle, double[] normal)
+	// Stores the (not necessarily unit) facet normal of the triangle in normal[0..2]
+	// Triangles without a stored normal (or with a zero one) use their counter-clockwise winding
+	{
+		if (triangle < numNormals && (nx[triangle] != 0 || ny[triangle] != 0 || nz[triangle] != 0))
+		{
+			normal[0] = nx[triangle];
+			normal[1] = ny[triangle];
+			normal[2] = nz[triangle];
+			return;
+		}
+		
+		int	v0 = getVertexIndex(triangle, 0);
+		int	v1 = getVertexIndex(triangle, 1);
+		int	v2 = getVertexIndex(triangle, 2);
+		double	ax = x[v1] - x[v0], ay = y[v1] - y[v0], az = z[v1] - z[v0];
+		double	bx = x[v2] - x[v0], by = y[v2] - y[v0], bz = z[v2] - z[v0];
+		normal[0] = ay * bz - az * by;
+		normal[1] = az * bx - ax * bz;
+		normal[2] = ax * by - ay * bx;
+	}
+	
+	public void	trimToSize()
+	{
+		super.trimToSize();
+		if (numNormals < nx.length)
+		{
+			resizeNormals(numNormals);
+		}
+	}
+	
+	public void	set(GraphicObject object, Attributes attr)
+	{
+		super.set(object, attr);
+		if (object.getClass() == getClass())
+		{
+			TriangleMesh	mesh = (TriangleMesh) object;
+			nx = mesh.nx;
+			ny = mesh.ny;
+			nz = mesh.nz;
+			numNormals = mesh.numNormals;
+			areNormalsShared = mesh.areNormalsShared = true;
+		}
+	}
+	
+	private void	resizeNormals(int length)
+	{
+		nx = Arrays.copyOf(nx, length);
+		ny = Arrays.copyOf(ny, length);
+		nz = Arrays.copyOf(nz, length);
+	}
+	
+	private void	unshareNormals()
+	// Copies the normal arrays before they are modified
+	{
+		if (areNormalsShared)
+		{
+			resizeNormals(numNormals);
+			areNormalsShared = false;
+		}
+	}
+	
+	public GraphicObject	clone()
+	{
+		return new TriangleMesh(this);
+	}
+	
+	public String	toString()
+	{
+		return new String("Triangles: " + size() + ", Vertices: " + getNumVertices());
+	}
+	
+	
+	/* Mathematics
+	---------------------------------------------------------------------- */
+	public void	rotate(Point angles, Point origin)
+	// Rotates the vertices and the stored normals (normals around the coordinate origin)
+	{
+		super.rotate(angles, origin);
+		unshareNormals();
+		
+		Point3D	normal = new Point3D();
+		for (int t = 0; t < numNormals; t++)
+		{
+			normal.set(nx[t], ny[t], nz[t]);
+			normal.rotate(angles);
+			nx[t] = normal.getX();
+			ny[t] = normal.getY();
+			nz[t] = normal.getZ();
+		}
+	}
+	
+	public void	setProduct(double factor)
+	// Negative factors mirror the mesh through the origin, so the stored normals are flipped to keep facing outwards
+	{
+		super.setProduct(factor);
+		if (factor < 0)
+		{
+			flipNormals();
+		}
+	}
+	
+	public void	setQuotient(double factor)
+	{
+		super.setQuotient(factor);
+		if (factor < 0)
+		{
+			flipNormals();
+		}
+	}
+	
+	private void	flipNormals()
+	{
+		unshareNormals();
+		for (int t = 0; t < numNormals; t++)
+		{
+			nx[t] = -nx[t];
+			ny[t] = -ny[t];
+			nz[t] = -nz[t];
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+/* ------------------------------------------------------------
+   About:      View transform class
+               Immutable snapshot of the camera view as a matrix.
+   Author:     Michael C. Petrovich
+               michael.c.petrovich@gmail.com
+   
+   Copyright  2003-2007 Michael C. Petrovich
+------------------------------------------------------------ */
+
+package java3D.storage;
+
+public class	ViewTransform
+{
+	// Rotation around the rotation origin as a 3x4 matrix, in the order Z, then Y, then X
+	// (identical to Point3D.rotate); row i yields rotated coordinate i
+	public final double	m00, m01, m02, m03;
+	public final double	m10, m11, m12, m13;
+	public final double	m20, m21, m22, m23;
+	
+	// 2D-to-screen mapping
+	public final double	zoom;
+	public final double	screenX, screenY;		// Screen position of the 3D origin
+	
+	// Perspective settings
+	public final double	vanishX, vanishY;		// 2D vanishing point
+	public final double	eyeX, eyeY, eyeZ;		// Perspective camera location
+	public final double	perspectiveDistance;		// Distance over which the perspective scaling halves
+	
+	
+	/* Constructors
+	---------------------------------------------------------------------- */
+	ViewTransform(Camera camera)
+	{
+		Point3D	angles = camera.getViewAngles();
+		Point3D	origin = camera.getRotateOrigin();
+		
+		// Rotation matrices (CW around Z, CCW around Y, CW around X)
+		double	a = Math.toRadians(angles.getZ());
+		double	b = Math.toRadians(angles.getY());
+		double	c = Math.toRadians(angles.getX());
+		double[][]	rotZ = { { Math.cos(a), Math.sin(a), 0 }, 
+		                     { -Math.sin(a), Math.cos(a), 0 }, 
+		                     { 0, 0, 1 } };
+		double[][]	rotY = { { Math.cos(b), 0, Math.sin(b) }, 
+		                     { 0, 1, 0 }, 
+		                     { -Math.sin(b), 0, Math.cos(b) } };
+		double[][]	rotX = { { 1, 0, 0 }, 
+		                     { 0, Math.cos(c), Math.sin(c) }, 
+		                     { 0, -Math.sin(c), Math.cos(c) } };
+		double[][]	r = multiply(rotX, multiply(rotY, rotZ));
+		
+		// Rotates around the rotation origin: r * (p - origin) + origin
+		double[]	o = { origin.getX(), origin.getY(), origin.getZ() };
+		double[]	t = new double[3];
+		for (int i = 0; i < 3; i++)
+		{
+			t[i] = o[i] - (r[i][0] * o[0] + r[i][1] * o[1] + r[i][2] * o[2]);
+		}
+		m00 = r[0][0];  m01 = r[0][1];  m02 = r[0][2];  m03 = t[0];
+		m10 = r[1][0];  m11 = r[1][1];  m12 = r[1][2];  m13 = t[1];
+		m20 = r[2][0];  m21 = r[2][1];  m22 = r[2][2];  m23 = t[2];
+		
+		// 2D-to-screen mapping
+		Point2D	screenOrigin = camera.getScreenOrigin();
+		zoom = camera.getZoom();
+		screenX = screenOrigin.getX();
+		screenY = screenOrigin.getY();
+		
+		// Perspective settings (the camera rotate radius is set to the object size)
+		double	rotateRadius = camera.getRangeMultiplier() * camera.getExtentsMaxRange();
+		Point3D	eye = camera.getCameraLocation(rotateRadius);
+		vanishX = origin.getY();
+		vanishY = origin.getZ();
+		eyeX = eye.getX();
+		eyeY = eye.getY();
+		eyeZ = eye.getZ();
+		perspectiveDistance = camera.getPerspectiveUnit() * rotateRadius;
+	}
+	
+	private static double[][]	multiply(double[][] m1, double[][] m2)
+	{
+		double[][]	m = new double[3][3];
+		for (int i = 0; i < 3; i++)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				m[i][j] = m1[i][0] * m2[0][j] + m1[i][1] * m2[1][j] + m1[i][2] * m2[2][j];
+			}
+		}
+		return m;
+	}
+	
+	
+	/* Transformation
+	---------------------------------------------------------------------- */
+	public double	rotateX(double x, double y, double z)
+	// Returns the X coordinate of the rotated point (depth towards the camera)
+	{
+		return m00 * x + m01 * y + m02 * z + m03;
+	}
+	
+	public double	rotateY(double x, double y, double z)
+	// Returns the Y coordinate of the rotated point (2D horizontal)
+	{
+		return m10 * x + m11 * y + m12 * z + m13;
+	}
+	
+	public double	rotateZ(double x, double y, double z)
+	// Returns the Z coordinate of the rotated point (2D vertical)
+	{
+		return m20 * x + m21 * y + m22 * z + m23;
+	}
+	
+	public Point3D	unrotate(double x, double y, double z)
+	// Returns the unrotated point of the given rotated coordinates (the inverse of rotateX/Y/Z)
+	{
+		x -= m03;
+		y -= m13;
+		z -= m23;
+		return new Point3D(m00 * x + m10 * y + m20 * z, 
+		                   m01 * x + m11 * y + m21 * z, 
+		                   m02 * x + m12 * y + m22 * z);
+	}
+	
+	public double	getScaling(double x, double y, double z)
+	// Returns the perspective scaling factor at the given (unrotated) coordinates
+	{
+		double	distance = Math.sqrt( (x - eyeX) * (x - eyeX) + 
+		                              (y - eyeY) * (y - eyeY) + 
+		                              (z - eyeZ) * (z - eyeZ) );
+		return getScaling(distance);
+	}
+	
+	public double	getScaling(double distance)
+	// Returns the perspective scaling factor at the given distance from the eye
+	{
+		return Math.pow(0.5, distance / perspectiveDistance);
+	}
+	
+	public double	toScreenX(double x)
+	// Transforms a 2D Cartesian X coordinate to a screen X coordinate
+	{
+		return screenX + x * zoom;
+	}
+	
+	public double	toScreenY(double y)
+	// Transforms a 2D Cartesian Y coordinate to a screen Y coordinate
+	{
+		return screenY - y * zoom;
+	}
+	
+	public double	toCartesianX(double x)
+	// Transforms a screen X coordinate to a 2D Cartesian X coordinate
+	{
+		return (x - screenX) / zoom;
+	}
+	
+	public double	toCartesianY(double y)
+	// Transforms a screen Y coordinate to a 2D Cartesian Y coordinate
+	{
+		return (screenY - y) / zoom;
+	}
+}
\ No newline at end of file